@@ -1,21 +1,15 @@
 package io.storj.codeowners;
 
-import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
 import org.eclipse.jgit.ignore.FastIgnoreRule;
 
 import java.io.*;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class Config {
 
-    private static final Splitter SPLITTER = Splitter.on(' ');
-
     public static final Pattern REVIEWER_COUNT_PATTERN = Pattern.compile("#\\s*gerrit-codeowners.reviewer-count:\\s*(\\d+)\\s*");
 
     public static final Pattern USE_GIT_HISTORY = Pattern.compile("#\\s*gerrit-codeowners.use-git-history: true");
@@ -24,101 +18,429 @@ public class Config {
     public final List<Rule> rules;
     public final int reviewerCount;
     public boolean useGitHistory;
+    // name of the strategy used to pick reviewers among the owners, null for the default
+    public final String reviewerSelector;
+
+    // every distinct owner of the config, the position in the list is the id of the owner
+    private final List<String> owners;
+    // ids of the owners of each rule, in the order of the rules
+    private final int[][] ruleOwners;
+    // indexes of the rules of each owner, by owner id
+    private final int[][] ownerRules;
+
+    // optional index used to skip rules which can't match a path, null when the config was not compiled
+    private final RuleIndex index;
 
     public Config(final List<Rule> rules, int assigneNo, boolean useGitHistory) {
+        this(rules, assigneNo, useGitHistory, false);
+    }
+
+    public Config(final List<Rule> rules, int assigneNo, boolean useGitHistory, boolean compile) {
+        this(rules, assigneNo, useGitHistory, null, compile);
+    }
+
+    public Config(final List<Rule> rules, int assigneNo, boolean useGitHistory, String reviewerSelector, boolean compile) {
         this.rules = rules;
         this.reviewerCount = assigneNo;
         this.useGitHistory = useGitHistory;
+        this.reviewerSelector = reviewerSelector;
+        this.index = compile ? new RuleIndex(rules) : null;
+
+        final Map<String, Integer> ids = new HashMap<>();
+        final List<String> owners = new ArrayList<>();
+        this.ruleOwners = new int[rules.size()][];
+        for (int i = 0; i < rules.size(); i++) {
+            final String[] names = rules.get(i).owners;
+            final int[] rule = new int[names.length];
+
+            int j = 0;
+            for (final String name : names) {
+                Integer id = ids.get(name);
+                if (id == null) {
+                    id = owners.size();
+                    ids.put(name, id);
+                    owners.add(name);
+                }
+                rule[j++] = id;
+            }
+
+            this.ruleOwners[i] = rule;
+        }
+        this.owners = Collections.unmodifiableList(owners);
+
+        final int[] counts = new int[owners.size()];
+        for (final int[] rule : ruleOwners) {
+            for (final int owner : rule) {
+                counts[owner]++;
+            }
+        }
+        this.ownerRules = new int[owners.size()][];
+        for (int owner = 0; owner < counts.length; owner++) {
+            this.ownerRules[owner] = new int[counts[owner]];
+        }
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < ruleOwners.length; i++) {
+            for (final int owner : ruleOwners[i]) {
+                this.ownerRules[owner][counts[owner]++] = i;
+            }
+        }
+    }
+
+    public boolean isCompiled() {
+        return index != null;
+    }
+
+    // ownerName returns the owner behind an id set by a Matcher.
+    public String ownerName(final int id) {
+        return owners.get(id);
     }
 
     public Set<String> ownersFor(final String path) {
-        Set<String> owners = new HashSet<>();
+        final Matcher matcher = matcher();
+        matcher.match(path);
+        return matcher.owners();
+    }
+
+    /**
+     * Returns the owners of all the paths, the same as the union of {@link #ownersFor(String)} for each path but
+     * without evaluating every rule against every path. See {@link Matcher#matchAll(Collection)}.
+     */
+    public Set<String> ownersForAll(final Collection<String> paths) {
+        final Matcher matcher = matcher();
+        matcher.matchAll(paths);
+        return matcher.owners();
+    }
+
+    public Matcher matcher() {
+        return new Matcher();
+    }
+
+    /**
+     * Matcher accumulates the owners of any number of paths as a bitset of owner ids, reusing its buffers between
+     * paths, so matching a file doesn't allocate a set of owners.
+     */
+    public final class Matcher {
+        private final BitSet owners = new BitSet();
+        private final BitSet candidates = new BitSet();
 
-        for (final Rule rule : this.rules) {
+        private Matcher() {
+        }
+
+        // match adds the owners of the path.
+        public void match(final String path) {
+            if (index == null) {
+                for (int i = 0; i < rules.size(); i++) {
+                    matchRule(i, path);
+                }
+                return;
+            }
+
+            candidates.clear();
+            index.candidates(path, candidates);
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                matchRule(i, path);
+            }
+        }
+
+        /**
+         * Adds the owners of all the paths. The paths are arranged in a trie of directories, and a rule matching a
+         * directory applies to every file below it, so it is evaluated once per subtree rather than once per file.
+         * Rules whose owners were all matched already can't change the result and are dropped, and the walk stops
+         * as soon as no rule is left.
+         */
+        public void matchAll(final Collection<String> paths) {
+            final List<String> irregular = new ArrayList<>();
+            final PathTrie trie = PathTrie.of(paths, irregular);
+
+            for (final String path : irregular) {
+                match(path);
+            }
+
+            final BitSet live = new BitSet(rules.size());
+            final int[] missing = new int[rules.size()];
+            for (int i = 0; i < rules.size(); i++) {
+                for (final int owner : ruleOwners[i]) {
+                    if (!owners.get(owner)) {
+                        missing[i]++;
+                    }
+                }
+                if (missing[i] > 0) {
+                    live.set(i);
+                }
+            }
+
+            walk(trie, live, missing);
+        }
+
+        private void walk(final PathTrie node, final BitSet live, final int[] missing) {
+            for (final PathTrie directory : node.directories.values()) {
+                if (live.isEmpty()) {
+                    return;
+                }
+
+                matchLive(directory.path, true, live, missing);
+                walk(directory, live, missing);
+            }
+
+            for (final String file : node.files) {
+                if (live.isEmpty()) {
+                    return;
+                }
+
+                matchLive(file, false, live, missing);
+            }
+        }
+
+        private void matchLive(final String path, final boolean directory, final BitSet live, final int[] missing) {
+            candidates.clear();
+            if (index == null) {
+                candidates.or(live);
+            } else {
+                index.candidates(path, candidates);
+                candidates.and(live);
+            }
+
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                if (!rules.get(i).pattern.isMatch(path, directory)) {
+                    continue;
+                }
+
+                for (final int owner : ruleOwners[i]) {
+                    if (owners.get(owner)) {
+                        continue;
+                    }
+
+                    owners.set(owner);
+                    // rules waiting on this owner are one step closer to being unable to add anything
+                    for (final int rule : ownerRules[owner]) {
+                        if (--missing[rule] == 0) {
+                            live.clear(rule);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void matchRule(final int rule, final String path) {
             // code reviews typically do not deal with directories...
-            if (rule.pattern.isMatch(path, false)) {
-                owners.addAll(rule.owners);
+            if (rules.get(rule).pattern.isMatch(path, false)) {
+                for (final int owner : ruleOwners[rule]) {
+                    owners.set(owner);
+                }
+            }
+        }
+
+        // ownerIds returns the ids of the owners matched so far, see ownerName.
+        public BitSet ownerIds() {
+            return owners;
+        }
+
+        public Set<String> owners() {
+            final Set<String> names = new HashSet<>(owners.cardinality() * 2);
+            for (int i = owners.nextSetBit(0); i >= 0; i = owners.nextSetBit(i + 1)) {
+                names.add(Config.this.owners.get(i));
             }
+            return names;
         }
 
-        return owners;
+        public void clear() {
+            owners.clear();
+        }
     }
 
     public static Config open(final File file) throws IOException {
         try (FileReader reader = new FileReader(file)) {
-            return parse(new BufferedReader(reader).lines());
+            return open(reader);
         }
     }
 
     public static Config open(final Reader reader) throws IOException {
-        return parse(new BufferedReader(reader).lines());
+        return open(reader, false);
+    }
+
+    public static Config open(final Reader reader, final boolean compile) throws IOException {
+        final BufferedReader lines = new BufferedReader(reader);
+        final Parser parser = new Parser();
+
+        String line;
+        while ((line = lines.readLine()) != null) {
+            parser.line(line);
+        }
+
+        return parser.build(compile);
     }
 
     public static Config parse(final Stream<String> stream) {
-        final List<Rule> rules = new ArrayList<>();
-        AtomicInteger assigneeNo = new AtomicInteger(2);
-        AtomicBoolean useGitHistory = new AtomicBoolean(false);
-        stream
-                .filter(Objects::nonNull)
-                .forEach((line) -> {
-                    final int commentStart = line.lastIndexOf("#");
-                    if (commentStart == 0 || (commentStart > 0 && line.charAt(commentStart - 1) != '\\')) {
-                        // comment, and comment unescaped
-
-                        String comment = line.substring(commentStart);
-                        Matcher matcher = REVIEWER_COUNT_PATTERN.matcher(comment);
-                        if (matcher.find()) {
-                            assigneeNo.set(Integer.parseInt(matcher.group(1)));
-                        }
-                        Matcher randomizeMatcher = USE_GIT_HISTORY.matcher(comment);
-                        if (randomizeMatcher.find()) {
-                            useGitHistory.set(true);
-                        }
+        return parse(stream, false);
+    }
 
-                        line = line.substring(0, commentStart);
-                    }
+    /**
+     * Parses a CODEOWNERS file. When <code>compile</code> is set, the rules are additionally indexed so
+     * {@link #ownersFor(String)} only evaluates rules which can match the path. Results are the same either way.
+     */
+    public static Config parse(final Stream<String> stream, final boolean compile) {
+        final Parser parser = new Parser();
+        stream.forEach(parser::line);
+        return parser.build(compile);
+    }
 
-                    if ("".equals(line)) {
-                        return;
-                    }
+    /**
+     * Parser is a single pass lexer over the lines of a CODEOWNERS file.
+     * <p>
+     * Lines are split on spaces into a pattern followed by owners, where a part ending with a backslash gets its
+     * escaped space re-inserted. Everything after the last unescaped <code>#</code> is a comment, which may carry a
+     * <code>gerrit-codeowners.*</code> directive matching {@link #REVIEWER_COUNT_PATTERN} or {@link #USE_GIT_HISTORY},
+     * or a <code>gerrit-codeowners.reviewer-selector: name</code> directive.
+     */
+    private static final class Parser {
+        private static final String DIRECTIVE_PREFIX = "gerrit-codeowners";
+        private static final String REVIEWER_COUNT = "reviewer-count:";
+        private static final String USE_GIT_HISTORY = "use-git-history: true";
+        private static final String REVIEWER_SELECTOR = "reviewer-selector:";
+
+        private final List<Rule> rules = new ArrayList<>();
+        private final List<String> owners = new ArrayList<>();
+        // the same few owners repeat on many lines, keep a single copy of each
+        private final Map<String, String> names = new HashMap<>();
+        private int reviewerCount = 2;
+        private boolean useGitHistory = false;
+        private String reviewerSelector = null;
+
+        private void line(final String line) {
+            if (line == null) {
+                return;
+            }
+
+            int end = line.length();
+
+            final int commentStart = line.lastIndexOf('#');
+            if (commentStart == 0 || (commentStart > 0 && line.charAt(commentStart - 1) != '\\')) {
+                // comment, and comment unescaped
+                directive(line, commentStart + 1);
+                end = commentStart;
+            }
+
+            String pattern = null;
+            owners.clear();
 
-                    final List<String> parts = SPLITTER
-                            .splitToStream(line)
-                            .filter(Objects::nonNull)
-                            .filter((part) -> part.length() > 0)
-                            .map((part) -> {
-                                // re-insert spaces that were escaped
-                                if (part.charAt(part.length() - 1) == '\\') {
-                                    part = part + " ";
-                                }
+            int i = 0;
+            while (i < end) {
+                if (line.charAt(i) == ' ') {
+                    i++;
+                    continue;
+                }
 
-                                return part;
-                            })
-                            .collect(Collectors.toList());
+                final int start = i;
+                while (i < end && line.charAt(i) != ' ') {
+                    i++;
+                }
 
-                    rules.add(new Config.Rule(
-                            new FastIgnoreRule(parts.get(0)),
-                            parts.subList(1, parts.size())
-                    ));
-                });
+                String part = line.substring(start, i);
+                if (line.charAt(i - 1) == '\\') {
+                    // re-insert spaces that were escaped
+                    part = part + " ";
+                }
 
-        return new Config(rules, assigneeNo.get(), useGitHistory.get());
+                if (pattern == null) {
+                    pattern = part;
+                } else {
+                    final String name = names.putIfAbsent(part, part);
+                    owners.add(name == null ? part : name);
+                }
+            }
+
+            if (pattern == null) {
+                // blank line, or only a comment
+                return;
+            }
+
+            rules.add(new Rule(new FastIgnoreRule(pattern), owners));
+        }
+
+        private void directive(final String line, int i) {
+            i = skipWhitespace(line, i);
+            if (!line.startsWith(DIRECTIVE_PREFIX, i)) {
+                return;
+            }
+
+            // the prefix is followed by any separator, typically a dot
+            i += DIRECTIVE_PREFIX.length();
+            if (i >= line.length() || isLineTerminator(line.charAt(i))) {
+                return;
+            }
+            i += Character.charCount(line.codePointAt(i));
+
+            if (line.startsWith(REVIEWER_COUNT, i)) {
+                final int start = skipWhitespace(line, i + REVIEWER_COUNT.length());
+                int digits = start;
+                while (digits < line.length() && line.charAt(digits) >= '0' && line.charAt(digits) <= '9') {
+                    digits++;
+                }
+
+                if (digits > start) {
+                    reviewerCount = Integer.parseInt(line, start, digits, 10);
+                }
+            } else if (line.startsWith(USE_GIT_HISTORY, i)) {
+                useGitHistory = true;
+            } else if (line.startsWith(REVIEWER_SELECTOR, i)) {
+                final int start = skipWhitespace(line, i + REVIEWER_SELECTOR.length());
+                int end = start;
+                while (end < line.length() && !isWhitespace(line.charAt(end))) {
+                    end++;
+                }
+
+                if (end > start) {
+                    reviewerSelector = line.substring(start, end);
+                }
+            }
+        }
+
+        private Config build(final boolean compile) {
+            return new Config(rules, reviewerCount, useGitHistory, reviewerSelector, compile);
+        }
+
+        private static int skipWhitespace(final String line, int i) {
+            while (i < line.length() && isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        // same characters as \s in java.util.regex
+        private static boolean isWhitespace(final char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+        }
+
+        // characters not matched by . in java.util.regex
+        private static boolean isLineTerminator(final char c) {
+            return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
     }
 
     public static class Rule {
         public final FastIgnoreRule pattern;
-        public final Set<String> owners;
+        // distinct owners in the order they appear, the config keeps them as ids as well so there's no set per rule
+        private final String[] owners;
 
         public Rule(final FastIgnoreRule pattern, final Collection<String> owners) {
             this.pattern = pattern;
-            this.owners = new HashSet<>(owners);
+            this.owners = ImmutableSet.copyOf(owners).toArray(new String[0]);
+        }
+
+        // owners returns the distinct owners of the rule, built on each call.
+        public Set<String> owners() {
+            return ImmutableSet.copyOf(owners);
+        }
+
+        public int ownerCount() {
+            return owners.length;
         }
 
         @Override
         public String toString() {
             return "Rule{" +
                     "pattern=" + pattern +
-                    ", owners=" + owners +
+                    ", owners=" + Arrays.toString(owners) +
                     '}';
         }
     }
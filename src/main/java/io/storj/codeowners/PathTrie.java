@@ -0,0 +1,49 @@
+package io.storj.codeowners;
+
+import java.util.*;
+
+/**
+ * PathTrie groups the paths of a change by directory, so rules matching a whole directory can be evaluated once for
+ * all the files below it.
+ */
+final class PathTrie {
+    // path of the directory relative to the root, without leading or trailing slashes
+    final String path;
+    final Map<String, PathTrie> directories = new TreeMap<>();
+    // files directly in the directory, as they were provided
+    final List<String> files = new ArrayList<>();
+
+    private PathTrie(final String path) {
+        this.path = path;
+    }
+
+    /**
+     * Builds a trie from the paths. Paths the trie can't represent faithfully (empty segments, trailing slashes) are
+     * added to <code>irregular</code> instead.
+     */
+    static PathTrie of(final Collection<String> paths, final List<String> irregular) {
+        final PathTrie root = new PathTrie("");
+
+        for (final String path : paths) {
+            final int start = path.startsWith("/") ? 1 : 0;
+            if (start >= path.length() || path.endsWith("/") || path.indexOf("//", start) >= 0) {
+                irregular.add(path);
+                continue;
+            }
+
+            PathTrie node = root;
+            int from = start;
+            int slash;
+            while ((slash = path.indexOf('/', from)) >= 0) {
+                final String name = path.substring(from, slash);
+                final int end = slash;
+                node = node.directories.computeIfAbsent(name, (k) -> new PathTrie(path.substring(start, end)));
+                from = slash + 1;
+            }
+
+            node.files.add(path);
+        }
+
+        return root;
+    }
+}
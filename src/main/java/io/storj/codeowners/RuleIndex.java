@@ -0,0 +1,209 @@
+package io.storj.codeowners;
+
+import java.util.*;
+
+/**
+ * RuleIndex narrows the rules of a {@link Config} down to the ones that can possibly match a path, so matching
+ * cost follows the depth of the path instead of the number of rules.
+ * <p>
+ * Rules are grouped by the literal part every matching path has to contain:
+ * <ul>
+ *     <li>anchored rules with a literal prefix (<code>/build/logs/</code>, <code>docs/*</code>) live in a trie of
+ *     path segments, walked from the root of the path;</li>
+ *     <li>rules that need a literal segment somewhere (<code>apps/</code>, <code>Jenkinsfile</code>,
+ *     <code>**&#47;logs</code>) are keyed by that segment;</li>
+ *     <li>extension globs (<code>*.go</code>) are keyed by the extension;</li>
+ *     <li>everything else (<code>*</code>, negations, escapes, ...) is always a candidate.</li>
+ * </ul>
+ * Candidates are still verified with {@link org.eclipse.jgit.ignore.FastIgnoreRule#isMatch(String, boolean)}, the
+ * index only has to guarantee that it never drops a rule that would match.
+ */
+final class RuleIndex {
+
+    private final Node root;
+    private final Map<String, int[]> segments;
+    private final Map<String, int[]> extensions;
+    private final int[] unindexed;
+
+    RuleIndex(final List<Config.Rule> rules) {
+        final Builder builder = new Builder();
+        for (int i = 0; i < rules.size(); i++) {
+            builder.add(i, rules.get(i).pattern.toString());
+        }
+
+        this.root = builder.root.freeze();
+        this.segments = freeze(builder.segments);
+        this.extensions = freeze(builder.extensions);
+        this.unindexed = toArray(builder.unindexed);
+    }
+
+    /**
+     * Sets the index of every rule that might match the path in the provided bitset.
+     */
+    void candidates(final String path, final BitSet candidates) {
+        for (final int rule : unindexed) {
+            candidates.set(rule);
+        }
+
+        Node node = root;
+
+        int start = 0;
+        final int length = path.length();
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+
+            if (end > start) {
+                final String segment = path.substring(start, end);
+
+                if (node != null) {
+                    node = node.children.get(segment);
+                    if (node != null) {
+                        set(candidates, node.rules);
+                    }
+                }
+
+                set(candidates, segments.get(segment));
+
+                final int dot = segment.lastIndexOf('.');
+                if (dot >= 0 && dot < segment.length() - 1) {
+                    set(candidates, extensions.get(segment.substring(dot + 1)));
+                }
+            }
+
+            start = end + 1;
+        }
+    }
+
+    static boolean isLiteral(final String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            switch (segment.charAt(i)) {
+                case '*':
+                case '?':
+                case '[':
+                case '\\':
+                    return false;
+                default:
+            }
+        }
+
+        return !segment.isEmpty();
+    }
+
+    private static void set(final BitSet candidates, final int[] rules) {
+        if (rules == null) {
+            return;
+        }
+
+        for (final int rule : rules) {
+            candidates.set(rule);
+        }
+    }
+
+    private static int[] toArray(final List<Integer> list) {
+        final int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private static Map<String, int[]> freeze(final Map<String, List<Integer>> map) {
+        final Map<String, int[]> frozen = new HashMap<>(map.size() * 2);
+        for (final Map.Entry<String, List<Integer>> entry : map.entrySet()) {
+            frozen.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        return frozen;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children;
+        private final int[] rules;
+
+        private Node(final Map<String, Node> children, final int[] rules) {
+            this.children = children;
+            this.rules = rules;
+        }
+    }
+
+    private static final class Builder {
+        private final MutableNode root = new MutableNode();
+        private final Map<String, List<Integer>> segments = new HashMap<>();
+        private final Map<String, List<Integer>> extensions = new HashMap<>();
+        private final List<Integer> unindexed = new ArrayList<>();
+
+        private void add(final int rule, String pattern) {
+            if (pattern.isEmpty() || pattern.charAt(0) == '!' || pattern.indexOf('\\') >= 0) {
+                // negations and escapes are rare enough to not be worth modelling
+                unindexed.add(rule);
+                return;
+            }
+
+            if (pattern.endsWith("/")) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+
+            // a slash anywhere but the end anchors the pattern to the root of the repository
+            final boolean anchored = pattern.indexOf('/') >= 0;
+
+            final List<String> parts = new ArrayList<>();
+            for (final String part : pattern.split("/")) {
+                if (!part.isEmpty()) {
+                    parts.add(part);
+                }
+            }
+
+            if (parts.isEmpty()) {
+                unindexed.add(rule);
+                return;
+            }
+
+            if (anchored) {
+                MutableNode node = root;
+                int depth = 0;
+                while (depth < parts.size() && isLiteral(parts.get(depth))) {
+                    node = node.children.computeIfAbsent(parts.get(depth), (k) -> new MutableNode());
+                    depth++;
+                }
+
+                if (depth > 0) {
+                    node.rules.add(rule);
+                    return;
+                }
+            }
+
+            for (final String part : parts) {
+                if (isLiteral(part)) {
+                    segments.computeIfAbsent(part, (k) -> new ArrayList<>()).add(rule);
+                    return;
+                }
+            }
+
+            if (!anchored) {
+                final String part = parts.get(0);
+                final int dot = part.lastIndexOf('.');
+                if (part.charAt(0) == '*' && dot > 0 && dot < part.length() - 1 && isLiteral(part.substring(1))) {
+                    extensions.computeIfAbsent(part.substring(dot + 1), (k) -> new ArrayList<>()).add(rule);
+                    return;
+                }
+            }
+
+            unindexed.add(rule);
+        }
+    }
+
+    private static final class MutableNode {
+        private final Map<String, MutableNode> children = new HashMap<>();
+        private final List<Integer> rules = new ArrayList<>();
+
+        private Node freeze() {
+            final Map<String, Node> frozen = new HashMap<>(children.size() * 2);
+            for (final Map.Entry<String, MutableNode> entry : children.entrySet()) {
+                frozen.put(entry.getKey(), entry.getValue().freeze());
+            }
+            return new Node(frozen, toArray(rules));
+        }
+    }
+}
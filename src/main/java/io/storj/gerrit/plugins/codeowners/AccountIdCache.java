@@ -0,0 +1,131 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.cache.Cache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import org.apache.log4j.Logger;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+// AccountIdCache keeps the gerrit account ids that usernames and emails resolved to, keyed by the account query
+// (`username:name` or `email:address`). Queries that matched no account are kept in a second, shorter lived cache,
+// so unknown GitHub users aren't looked up again on every event while new accounts still show up reasonably soon.
+//
+// Both caches are registered with gerrit, hence sizes and lifetimes can be tuned with
+// `cache.codeowners.accounts.memoryLimit` / `maxAge` and `cache.codeowners.accounts_missing.memoryLimit` / `maxAge`,
+// and hits and misses show up in `gerrit show-caches`.
+@Singleton
+public class AccountIdCache {
+    private static final Logger log = Logger.getLogger(AccountIdCache.class);
+
+    static final String CACHE_NAME = "accounts";
+    static final String MISSING_CACHE_NAME = "accounts_missing";
+
+    public static CacheModule module() {
+        return new CacheModule() {
+            @Override
+            protected void configure() {
+                cache(CACHE_NAME, String.class, Integer.class)
+                        .maximumWeight(10_000)
+                        .expireAfterWrite(Duration.ofHours(1));
+                cache(MISSING_CACHE_NAME, String.class, Boolean.class)
+                        .maximumWeight(10_000)
+                        .expireAfterWrite(Duration.ofMinutes(5));
+            }
+        };
+    }
+
+    // Loader resolves a query to an account id, or null when no account matches.
+    public interface Loader {
+        Integer load(String query) throws Exception;
+    }
+
+    // BatchLoader resolves many queries at once, queries without an account are left out of the result.
+    public interface BatchLoader {
+        Map<String, Integer> load(Collection<String> queries) throws Exception;
+    }
+
+    // Missing signals a query without a matching account, which can't be stored in the cache itself.
+    private static class Missing extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private Missing() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final Cache<String, Integer> found;
+    private final Cache<String, Boolean> missing;
+
+    @Inject
+    AccountIdCache(@Named(CACHE_NAME) final Cache<String, Integer> found,
+                   @Named(MISSING_CACHE_NAME) final Cache<String, Boolean> missing) {
+        this.found = found;
+        this.missing = missing;
+    }
+
+    // get returns the account id the query resolves to, invoking load only when the result isn't cached yet. Failed
+    // loads are logged and not cached.
+    public Integer get(final String query, final Loader load) {
+        if (missing.getIfPresent(query) != null) {
+            return null;
+        }
+
+        try {
+            return found.get(query, () -> {
+                final Integer id = load.load(query);
+                if (id == null) {
+                    throw new Missing();
+                }
+                return id;
+            });
+        } catch (final ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof Missing) {
+                missing.put(query, true);
+            } else {
+                log.error("failed to query account " + query, e.getCause());
+            }
+            return null;
+        }
+    }
+
+    // prefetch resolves the queries that aren't cached yet with a single call to load, so that following calls to get
+    // are served from the cache. Failed loads are logged and not cached.
+    public void prefetch(final Collection<String> queries, final BatchLoader load) {
+        final Set<String> uncached = new LinkedHashSet<>();
+        for (final String query : queries) {
+            if (!found.asMap().containsKey(query) && !missing.asMap().containsKey(query)) {
+                uncached.add(query);
+            }
+        }
+
+        if (uncached.isEmpty()) {
+            return;
+        }
+
+        final Map<String, Integer> ids;
+        try {
+            ids = load.load(uncached);
+        } catch (final Exception e) {
+            log.error("failed to query " + uncached.size() + " accounts", e);
+            return;
+        }
+
+        for (final String query : uncached) {
+            final Integer id = ids.get(query);
+            if (id == null) {
+                missing.put(query, true);
+            } else {
+                found.put(query, id);
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.gerrit.extensions.restapi.RestApiException;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+// AccountResolver finds the gerrit account of a GitHub username or email. The implementation is picked with the
+// `accountResolver` plugin option: `query` (default) goes through the account index like the REST API does,
+// `external-ids` looks accounts up in the external id and account caches of the server.
+public interface AccountResolver {
+    String QUERY = "query";
+    String EXTERNAL_IDS = "external-ids";
+
+    // byUsername returns the id of the active account with the username, or null when there is none.
+    Integer byUsername(String username) throws RestApiException, IOException;
+
+    // byEmail returns the id of an active account with the email, or null when there is none.
+    Integer byEmail(String email) throws RestApiException, IOException;
+
+    // byUsernames resolves many usernames at once, usernames without an account are left out of the result.
+    Map<String, Integer> byUsernames(Collection<String> usernames) throws RestApiException, IOException;
+
+    // byEmails resolves many emails at once, emails without an account are left out of the result.
+    Map<String, Integer> byEmails(Collection<String> emails) throws RestApiException, IOException;
+}
@@ -0,0 +1,515 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer1;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.util.ManualRequestContext;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.gerrit.server.util.RequestContext;
+import com.google.gerrit.server.util.ThreadLocalRequestContext;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// AssignmentQueue runs assignments on `assignmentThreads` (default 2) workers of its own, so gerrit's event delivery,
+// and with it pushes, doesn't wait for CODEOWNERS files, GitHub and account lookups.
+//
+// Assignments are INTERACTIVE when someone waits for the reviewers (an `autoassign` comment, a change marked ready)
+// and BACKGROUND otherwise (new revisions). Interactive assignments are queued right away and ahead of background
+// ones. Background assignments of a project are spread out to `assignmentProjectRate` per minute (default 60) after a
+// burst of `assignmentProjectBurst` (default 10), so a mass rebase in one project doesn't hold up the others. No
+// assignment waits more than `assignmentProjectMaxDelay` seconds (default 60) for its turn, beyond that the project
+// exceeds its rate rather than have its changes wait for hours.
+//
+// At most `assignmentQueueSize` (default 1000) changes wait to be assigned, for their debounce, their turn or a worker,
+// plus one per worker for changes with events arriving while they are being assigned. When the queue is full,
+// `assignmentOverflow` decides what happens to the assignment of another change:
+//
+// - `drop-oldest` (default): the background assignment waiting the longest is dropped, the new assignment when only
+//   interactive ones are waiting;
+// - `drop-newest`: the new assignment is dropped;
+// - `caller-runs`: the thread queueing the assignment runs it itself, slowing down further assignments until the queue
+//   catches up. That's the event thread.
+//
+// Assignments are per change: background events for a change within `assignmentDebounce` seconds (default 5) of its
+// first one coalesce into one assignment, the one of the latest event. A change is never assigned concurrently, events
+// arriving while it is being assigned are coalesced into a second run afterwards. Different changes are assigned in
+// parallel.
+//
+// Workers have no request of their own, assignments run as the user whose event queued them (the one pushing,
+// commenting, ...) like they did on the event thread, or as the internal user when there is none.
+//
+// On plugin unload, waiting assignments are queued for a worker right away and get `assignmentDrainTimeout` seconds
+// (default 30) to finish. Assignments still queued by then are dropped and counted as overflow.
+@Singleton
+public class AssignmentQueue implements LifecycleListener {
+    private static final Logger log = Logger.getLogger(AssignmentQueue.class);
+
+    // Priority of assignments, in the order they run.
+    public enum Priority {
+        INTERACTIVE, BACKGROUND
+    }
+
+    enum Overflow {
+        DROP_OLDEST, DROP_NEWEST, CALLER_RUNS;
+
+        static Overflow forName(final String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (final IllegalArgumentException e) {
+                log.warn(String.format("unknown assignmentOverflow '%s', using 'drop-oldest'", name));
+                return DROP_OLDEST;
+            }
+        }
+    }
+
+    // projects tracked for rate shaping before idle ones are forgotten
+    private static final int MAX_PROJECTS = 1024;
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor debouncer;
+    private final int capacity;
+    private final Overflow overflow;
+    private final long debounceNanos;
+    private final long projectIntervalNanos;
+    private final long projectBurstNanos;
+    private final long projectMaxDelayNanos;
+    private final long drainTimeoutNanos;
+    private final ThreadLocalRequestContext requestContext;
+    private final OneOffRequestContext oneOffRequestContext;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    // changes with an assignment waiting or running, by name
+    private final Map<String, Change> changes = new HashMap<>();
+    // number of changes waiting to be assigned rather than being assigned; guarded by changes
+    private int pending;
+    // when the next background assignment of a project is due without bursting, in System#nanoTime terms; guarded by
+    // changes
+    private final Map<String, Long> projects = new HashMap<>();
+
+    private final Timer1<Priority> waitTime;
+    private final Timer1<Priority> latency;
+    private final Counter0 overflowed;
+    private final Counter0 coalesced;
+    private final Counter0 shaped;
+
+    @Inject
+    AssignmentQueue(final PluginConfigFactory cfg, final MetricMaker metrics, final ThreadLocalRequestContext requestContext, final OneOffRequestContext oneOffRequestContext) {
+        this(cfg.getFromGerritConfig("codeowners"), metrics, requestContext, oneOffRequestContext);
+    }
+
+    private AssignmentQueue(final PluginConfig config, final MetricMaker metrics, final ThreadLocalRequestContext requestContext, final OneOffRequestContext oneOffRequestContext) {
+        this(Math.max(1, config.getInt("assignmentThreads", 2)),
+                Math.max(1, config.getInt("assignmentQueueSize", 1000)),
+                Overflow.forName(config.getString("assignmentOverflow", "drop-oldest")),
+                TimeUnit.SECONDS.toNanos(config.getLong("assignmentDebounce", 5)),
+                config.getInt("assignmentProjectRate", 60),
+                config.getInt("assignmentProjectBurst", 10),
+                TimeUnit.SECONDS.toNanos(Math.max(0, config.getLong("assignmentProjectMaxDelay", 60))),
+                TimeUnit.SECONDS.toNanos(config.getLong("assignmentDrainTimeout", 30)),
+                metrics, requestContext, oneOffRequestContext);
+    }
+
+    AssignmentQueue(final int threads, final int capacity, final Overflow overflow, final long debounceNanos, final int projectRate, final int projectBurst, final long projectMaxDelayNanos, final long drainTimeoutNanos, final MetricMaker metrics, final ThreadLocalRequestContext requestContext, final OneOffRequestContext oneOffRequestContext) {
+        final AtomicInteger workers = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES, new TaskQueue(),
+                (runnable) -> {
+                    final Thread thread = new Thread(runnable, "CodeOwners-Assign-" + workers.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                this.stoppingHandler());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.debouncer = new ScheduledThreadPoolExecutor(1, (runnable) -> {
+            final Thread thread = new Thread(runnable, "CodeOwners-Debounce");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.debouncer.setRemoveOnCancelPolicy(true);
+        this.capacity = capacity;
+        this.overflow = overflow;
+        this.debounceNanos = debounceNanos;
+        // a rate of 0 disables shaping
+        this.projectIntervalNanos = projectRate > 0 ? TimeUnit.MINUTES.toNanos(1) / projectRate : 0;
+        this.projectBurstNanos = this.projectIntervalNanos * Math.max(0, projectBurst - 1);
+        this.projectMaxDelayNanos = projectMaxDelayNanos;
+        this.drainTimeoutNanos = drainTimeoutNanos;
+        this.requestContext = requestContext;
+        this.oneOffRequestContext = oneOffRequestContext;
+
+        metrics.newCallbackMetric("assignment/queue_depth", Integer.class,
+                new Description("Changes waiting to be assigned").setGauge().setUnit("assignments"),
+                this::depth);
+        this.waitTime = metrics.newTimer("assignment/queue_wait",
+                new Description("Time assignments waited for a worker").setCumulative().setUnit(Description.Units.MILLISECONDS),
+                priority());
+        this.latency = metrics.newTimer("assignment/latency",
+                new Description("Time from the latest event of a change to its assigned reviewers").setCumulative().setUnit(Description.Units.MILLISECONDS),
+                priority());
+        this.overflowed = metrics.newCounter("assignment/overflow",
+                new Description("Assignments dropped or run by the caller for a full queue, or dropped on unload").setRate().setUnit("assignments"));
+        this.coalesced = metrics.newCounter("assignment/coalesced",
+                new Description("Assignments replaced by a later one for the same change").setRate().setUnit("assignments"));
+        this.shaped = metrics.newCounter("assignment/shaped",
+                new Description("Background assignments delayed by the rate of their project").setRate().setUnit("assignments"));
+    }
+
+    private static Field<Priority> priority() {
+        return Field.ofEnum(Priority.class, "priority", Field.ignoreMetadata())
+                .description("priority of the assignment")
+                .build();
+    }
+
+    // submit queues the assignment of the change with the name, replacing an assignment of the change that didn't
+    // start yet.
+    public void submit(final String name, final String project, final Priority priority, final Runnable assignment) {
+        final Account.Id caller = caller();
+        final Change change;
+        final Task waiting;
+        Task here = null;
+        boolean callerRuns = false;
+        synchronized (changes) {
+            final Change current = changes.get(name);
+            if (current == null) {
+                if (pending >= capacity) {
+                    overflowed.increment();
+                    switch (overflow) {
+                        case CALLER_RUNS:
+                            callerRuns = true;
+                            break;
+                        case DROP_NEWEST:
+                            log.warn(String.format("dropping assignment of %s, the queue is full", name));
+                            return;
+                        default:
+                            if (!dropOldest(priority)) {
+                                log.warn(String.format("dropping assignment of %s, the queue is full", name));
+                                return;
+                            }
+                    }
+                }
+
+                change = new Change(name, project, priority, assignment, caller);
+                changes.put(name, change);
+                pending++;
+                waiting = null;
+                if (callerRuns) {
+                    here = new Task(change, priority, sequence.incrementAndGet());
+                    change.task = here;
+                }
+            } else {
+                if (current.assignment != null) {
+                    coalesced.increment();
+                }
+                // a waiting change picks it up when it starts, a running one runs again afterwards
+                current.assignment = assignment;
+                current.caller = caller;
+                current.submitted = System.nanoTime();
+
+                if (priority.compareTo(current.priority) >= 0) {
+                    return;
+                }
+                current.priority = priority;
+                if (current.task == null) {
+                    // running, the next run has the new priority
+                    return;
+                }
+                change = current;
+                waiting = current.task;
+            }
+        }
+
+        if (here != null) {
+            here.queued = System.nanoTime();
+            here.run();
+            return;
+        }
+        if (waiting == null) {
+            schedule(change);
+            return;
+        }
+
+        // move the waiting change ahead, unless it started meanwhile
+        final ScheduledFuture<?> timer = waiting.timer;
+        if ((timer != null && timer.cancel(false)) || executor.remove(waiting)) {
+            schedule(change);
+        }
+    }
+
+    // dropOldest makes room for an assignment of the priority, dropping the waiting change of the lowest priority that
+    // waits the longest. It returns false when only changes of a higher priority are waiting. Guarded by changes.
+    private boolean dropOldest(final Priority priority) {
+        Change oldest = null;
+        for (final Change change : changes.values()) {
+            if (change.task == null) {
+                continue;
+            }
+            if (oldest == null || change.task.priority.compareTo(oldest.task.priority) > 0
+                    || change.task.priority == oldest.task.priority && change.task.sequence < oldest.task.sequence) {
+                oldest = change;
+            }
+        }
+        if (oldest == null || oldest.task.priority.compareTo(priority) < 0) {
+            return false;
+        }
+
+        final Task task = oldest.task;
+        if ((task.timer != null && task.timer.cancel(false)) || executor.remove(task)) {
+            log.warn(String.format("dropping assignment of %s, the queue is full", oldest.name));
+            oldest.task = null;
+            pending--;
+            changes.remove(oldest.name);
+            changes.notifyAll();
+        }
+        // otherwise it's starting, making room as well
+        return true;
+    }
+
+    // caller returns the account of the user whose request queues an assignment, null when there is none.
+    private Account.Id caller() {
+        final RequestContext context = requestContext.getContext();
+        if (context == null) {
+            return null;
+        }
+        final CurrentUser user = context.getUser();
+        return user != null && user.isIdentifiedUser() ? user.getAccountId() : null;
+    }
+
+    private void schedule(final Change change) {
+        final Task task;
+        final long delay;
+        synchronized (changes) {
+            task = new Task(change, change.priority, sequence.incrementAndGet());
+            change.task = task;
+
+            if (task.priority == Priority.INTERACTIVE) {
+                delay = 0;
+            } else {
+                final long turn = turn(change.project);
+                if (turn > debounceNanos) {
+                    shaped.increment();
+                }
+                delay = Math.max(debounceNanos, turn);
+            }
+        }
+
+        if (delay > 0 && !debouncer.isShutdown()) {
+            try {
+                task.timer = debouncer.schedule(() -> queue(task), delay, TimeUnit.NANOSECONDS);
+                return;
+            } catch (final RejectedExecutionException e) {
+                // stopping, queue right away
+            }
+        }
+        queue(task);
+    }
+
+    private void queue(final Task task) {
+        task.queued = System.nanoTime();
+        executor.execute(task);
+    }
+
+    // turn returns how long a background assignment of the project has to wait for its turn, guarded by changes.
+    private long turn(final String project) {
+        if (projectIntervalNanos == 0) {
+            return 0;
+        }
+
+        final long now = System.nanoTime();
+        if (projects.size() >= MAX_PROJECTS) {
+            projects.values().removeIf((due) -> due - now < 0);
+        }
+
+        final Long due = projects.get(project);
+        // the turn is at most the maximum delay away, the project exceeds its rate beyond it
+        final long latest = now + projectBurstNanos + projectMaxDelayNanos;
+        final long next = due == null || due - now < 0 ? now : due - latest > 0 ? latest : due;
+        projects.put(project, next + projectIntervalNanos);
+        return Math.max(0, next - projectBurstNanos - now);
+    }
+
+    // finished releases the change after its assignment ran, or was dropped. Assignments that arrived meanwhile are
+    // scheduled again.
+    private void finished(final Change change, final boolean ran) {
+        synchronized (changes) {
+            if (change.task != null) {
+                // dropped before it ran
+                change.task = null;
+                pending--;
+            }
+            if (!ran || change.assignment == null) {
+                changes.remove(change.name);
+                changes.notifyAll();
+                return;
+            }
+            pending++;
+        }
+
+        schedule(change);
+    }
+
+    // depth returns the number of changes waiting to be assigned.
+    int depth() {
+        synchronized (changes) {
+            return pending;
+        }
+    }
+
+    // stoppingHandler drops assignments queued after the workers stopped, the queue itself is unbounded since
+    // submit keeps the number of waiting changes within the capacity.
+    private RejectedExecutionHandler stoppingHandler() {
+        return (runnable, executor) -> {
+            final Task task = (Task) runnable;
+            log.warn(String.format("dropping assignment of %s, the plugin is stopping", task.change.name));
+            overflowed.increment();
+            finished(task.change, false);
+        };
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+        final long deadline = System.nanoTime() + drainTimeoutNanos;
+        // from now on assignments skip the debounce and their turn, and so do the ones waiting for them
+        debouncer.shutdown();
+        final List<Task> delayed = new ArrayList<>();
+        synchronized (changes) {
+            for (final Change change : changes.values()) {
+                if (change.task != null && change.task.timer != null) {
+                    delayed.add(change.task);
+                }
+            }
+        }
+        for (final Task task : delayed) {
+            if (task.timer.cancel(false)) {
+                queue(task);
+            }
+        }
+
+        // wait for all changes to be assigned, including the second runs of changes with late events
+        try {
+            synchronized (changes) {
+                long remaining;
+                while (!changes.isEmpty() && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(changes, remaining);
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        final int dropped = debouncer.shutdownNow().size() + executor.shutdownNow().size();
+        if (dropped > 0) {
+            overflowed.incrementBy(dropped);
+            log.warn(String.format("stopped with %d assignments still queued", dropped));
+        }
+    }
+
+    // TaskQueue holds the tasks waiting for a worker, by priority and then in order of arrival.
+    private static final class TaskQueue extends PriorityBlockingQueue<Runnable> {
+        private static final long serialVersionUID = 1L;
+
+        private TaskQueue() {
+            super(64, Comparator
+                    .comparing((Runnable runnable) -> ((Task) runnable).priority)
+                    .thenComparingLong((runnable) -> ((Task) runnable).sequence));
+        }
+    }
+
+    // Change is a change with an assignment waiting or running, guarded by changes.
+    private static final class Change {
+        private final String name;
+        private final String project;
+        private Priority priority;
+        // the latest assignment that didn't start yet
+        private Runnable assignment;
+        // the user the latest assignment runs as, null for the internal user
+        private Account.Id caller;
+        // when the latest assignment was submitted, in System#nanoTime terms
+        private long submitted = System.nanoTime();
+        // the task going to run the assignment, null while it runs
+        private Task task;
+
+        private Change(final String name, final String project, final Priority priority, final Runnable assignment, final Account.Id caller) {
+            this.name = name;
+            this.project = project;
+            this.priority = priority;
+            this.assignment = assignment;
+            this.caller = caller;
+        }
+    }
+
+    private final class Task implements Runnable {
+        private final Change change;
+        private final Priority priority;
+        private final long sequence;
+        // the debounce of the task, if any
+        private volatile ScheduledFuture<?> timer;
+        // when the task was handed to the workers, in System#nanoTime terms
+        private volatile long queued;
+
+        private Task(final Change change, final Priority priority, final long sequence) {
+            this.change = change;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            final Runnable assignment;
+            final Account.Id caller;
+            final long submitted;
+            synchronized (changes) {
+                assignment = change.assignment;
+                caller = change.caller;
+                submitted = change.submitted;
+                change.assignment = null;
+                change.task = null;
+                pending--;
+                // events arriving from now on decide the priority of the next run
+                change.priority = Priority.BACKGROUND;
+            }
+            waitTime.record(priority, System.nanoTime() - queued, TimeUnit.NANOSECONDS);
+
+            ManualRequestContext context = null;
+            try {
+                context = caller == null ? oneOffRequestContext.open() : oneOffRequestContext.openAs(caller);
+                assignment.run();
+            } catch (final RuntimeException e) {
+                log.error("failed to assign reviewers to " + change.name, e);
+            } finally {
+                if (context != null) {
+                    context.close();
+                }
+                latency.record(priority, System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                finished(change, true);
+            }
+        }
+    }
+}
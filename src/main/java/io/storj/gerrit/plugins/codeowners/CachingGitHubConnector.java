@@ -0,0 +1,183 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.*;
+
+// CachingGitHubConnector makes GET requests to GitHub conditional. Responses carrying an ETag are kept in a
+// ResponseStore, the next request for the same resource sends `If-None-Match` and a `304 Not Modified` answer is
+// served from the store. GitHub doesn't count 304 answers against the rate limit.
+//
+// Responses are keyed by URL and Accept header only: the plugin talks to GitHub with a single identity, while its
+// installation token changes every hour.
+//
+// When a request is throttled for lack of rate limit budget, the cached response is served as is.
+public class CachingGitHubConnector implements GitHubConnector {
+    // headers describing the encoding of the body on the wire, cached bodies are stored decoded
+    private static final Set<String> BODY_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        BODY_HEADERS.add("Content-Encoding");
+        BODY_HEADERS.add("Content-Length");
+        BODY_HEADERS.add("Transfer-Encoding");
+    }
+
+    private final GitHubConnector delegate;
+    private final ResponseStore store;
+    private final RateLimitGovernor governor;
+
+    CachingGitHubConnector(final GitHubConnector delegate, final ResponseStore store) {
+        this(delegate, store, null);
+    }
+
+    CachingGitHubConnector(final GitHubConnector delegate, final ResponseStore store, final RateLimitGovernor governor) {
+        this.delegate = delegate;
+        this.store = store;
+        this.governor = governor;
+    }
+
+    @Override
+    public GitHubConnectorResponse send(final GitHubConnectorRequest request) throws IOException {
+        if (!"GET".equals(request.method()) || request.hasBody() || request.header("If-None-Match") != null) {
+            return delegate.send(request);
+        }
+
+        final String key = request.url() + " " + request.header("Accept");
+        final ResponseStore.Entry cached = store.get(key);
+
+        final GitHubConnectorResponse response;
+        try {
+            response = delegate.send(cached == null ? request : new ConditionalRequest(request, cached.etag));
+        } catch (final RateLimitGovernor.Throttled e) {
+            if (cached == null) {
+                throw e;
+            }
+            if (governor != null) {
+                governor.servedStale();
+            }
+            return new CachedResponse(request, cached.headers, cached.body);
+        }
+        if (cached != null && response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            // the 304 carries fresh rate limit and date headers, everything else comes from the cached response
+            final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            headers.putAll(cached.headers);
+            headers.putAll(headers(response));
+            response.close();
+            return new CachedResponse(request, headers, cached.body);
+        }
+
+        final String etag = response.header("ETag");
+        if (response.statusCode() != HttpURLConnection.HTTP_OK || etag == null) {
+            return response;
+        }
+
+        final byte[] body;
+        try (final InputStream in = response.bodyStream()) {
+            body = read(in);
+        } finally {
+            response.close();
+        }
+
+        final Map<String, List<String>> headers = headers(response);
+        store.put(key, new ResponseStore.Entry(etag, headers, body));
+        return new CachedResponse(request, headers, body);
+    }
+
+    private static Map<String, List<String>> headers(final GitHubConnectorResponse response) {
+        final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (final Map.Entry<String, List<String>> header : response.allHeaders().entrySet()) {
+            // HttpURLConnection reports the status line as a header without name
+            if (header.getKey() != null && !BODY_HEADERS.contains(header.getKey())) {
+                headers.put(header.getKey(), header.getValue());
+            }
+        }
+        return headers;
+    }
+
+    private static byte[] read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (in != null) {
+            final byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    // ConditionalRequest is the request with an If-None-Match header added.
+    private static final class ConditionalRequest implements GitHubConnectorRequest {
+        private final GitHubConnectorRequest request;
+        private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        private ConditionalRequest(final GitHubConnectorRequest request, final String etag) {
+            this.request = request;
+            this.headers.putAll(request.allHeaders());
+            this.headers.put("If-None-Match", Collections.singletonList(etag));
+        }
+
+        @Override
+        public String method() {
+            return request.method();
+        }
+
+        @Override
+        public Map<String, List<String>> allHeaders() {
+            return Collections.unmodifiableMap(headers);
+        }
+
+        @Override
+        public String header(final String name) {
+            final List<String> values = headers.get(name);
+            return values == null || values.isEmpty() ? null : values.get(0);
+        }
+
+        @Override
+        public String contentType() {
+            return request.contentType();
+        }
+
+        @Override
+        public InputStream body() {
+            return request.body();
+        }
+
+        @Override
+        public URL url() {
+            return request.url();
+        }
+
+        @Override
+        public boolean hasBody() {
+            return request.hasBody();
+        }
+    }
+
+    // CachedResponse is a 200 response with a body in memory.
+    private static final class CachedResponse extends GitHubConnectorResponse {
+        private final byte[] body;
+
+        private CachedResponse(final GitHubConnectorRequest request, final Map<String, List<String>> headers, final byte[] body) {
+            super(request, HttpURLConnection.HTTP_OK, headers);
+            this.body = body;
+        }
+
+        @Override
+        public InputStream bodyStream() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import io.storj.codeowners.Config;
+import org.apache.log4j.Logger;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+// ConfigCache keeps parsed CODEOWNERS files keyed by the id of the blob they were read from. Branches and projects
+// sharing the same file content share one entry, and since blobs are immutable entries never need invalidating.
+//
+// The cache is registered with gerrit, hence size limits can be tuned with `cache.codeowners.config.memoryLimit` and
+// hits, misses and evictions show up in `gerrit show-caches` and the cache metrics.
+@Singleton
+public class ConfigCache {
+    private static final Logger log = Logger.getLogger(ConfigCache.class);
+
+    static final String CACHE_NAME = "config";
+
+    public static CacheModule module() {
+        return new CacheModule() {
+            @Override
+            protected void configure() {
+                cache(CACHE_NAME, ObjectId.class, Config.class)
+                        .maximumWeight(100_000)
+                        .weigher(ConfigWeigher.class);
+            }
+        };
+    }
+
+    // ConfigWeigher approximates the retained size of a config by the number of rules and owners it holds.
+    public static class ConfigWeigher implements Weigher<ObjectId, Config> {
+        @Override
+        public int weigh(final ObjectId key, final Config config) {
+            int weight = 1;
+            for (final Config.Rule rule : config.rules) {
+                weight += 1 + rule.ownerCount();
+            }
+            return weight;
+        }
+    }
+
+    private final Cache<ObjectId, Config> cache;
+
+    @Inject
+    ConfigCache(@Named(CACHE_NAME) final Cache<ObjectId, Config> cache) {
+        this.cache = cache;
+    }
+
+    // get returns the config parsed from the blob, invoking load only when it isn't cached yet. Nothing is returned
+    // when load fails, for example on a pattern that doesn't compile.
+    public Config get(final ObjectId blob, final Callable<Config> load) {
+        try {
+            return cache.get(blob.copy(), load);
+        } catch (final ExecutionException | UncheckedExecutionException e) {
+            log.error("failed to load CODEOWNERS from blob " + blob.name(), e.getCause());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.server.account.AccountCache;
+import com.google.gerrit.server.account.AccountState;
+import com.google.gerrit.server.account.externalids.ExternalId;
+import com.google.gerrit.server.account.externalids.ExternalIds;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+
+// ExternalIdAccountResolver resolves accounts in-process: usernames through the username external ids behind
+// AccountCache#getByUsername, emails through the email index of the external ids. Both are served from caches of the
+// server, no account index query is involved. Batches of emails are looked up with a single ExternalIds#byEmails call.
+//
+// Like account queries only active accounts match. When several accounts share an email the one with the lowest id
+// is picked, so the result is stable.
+@Singleton
+public class ExternalIdAccountResolver implements AccountResolver {
+    private final ExternalIds externalIds;
+    private final AccountCache accountCache;
+
+    @Inject
+    public ExternalIdAccountResolver(final ExternalIds externalIds, final AccountCache accountCache) {
+        this.externalIds = externalIds;
+        this.accountCache = accountCache;
+    }
+
+    @Override
+    public Integer byUsername(final String username) {
+        return active(accountCache.getByUsername(username));
+    }
+
+    @Override
+    public Integer byEmail(final String email) throws IOException {
+        return lowestActive(externalIds.byEmail(email));
+    }
+
+    @Override
+    public Map<String, Integer> byUsernames(final Collection<String> usernames) {
+        final Map<String, Integer> ids = new HashMap<>();
+        for (final String username : usernames) {
+            final Integer id = byUsername(username);
+            if (id != null) {
+                ids.put(username, id);
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public Map<String, Integer> byEmails(final Collection<String> emails) throws IOException {
+        final ImmutableSetMultimap<String, ExternalId> byEmail = externalIds.byEmails(emails.toArray(new String[0]));
+
+        final Map<String, Integer> ids = new HashMap<>();
+        for (final String email : emails) {
+            final Integer id = lowestActive(byEmail.get(email));
+            if (id != null) {
+                ids.put(email, id);
+            }
+        }
+        return ids;
+    }
+
+    private Integer lowestActive(final Collection<ExternalId> externalIds) {
+        final TreeSet<Integer> ids = new TreeSet<>();
+        for (final ExternalId externalId : externalIds) {
+            ids.add(externalId.accountId().get());
+        }
+
+        for (final int id : ids) {
+            final Integer active = active(accountCache.get(Account.id(id)));
+            if (active != null) {
+                return active;
+            }
+        }
+
+        return null;
+    }
+
+    private static Integer active(final Optional<AccountState> state) {
+        if (!state.isPresent() || !state.get().account().isActive()) {
+            return null;
+        }
+
+        return state.get().account().id().get();
+    }
+}
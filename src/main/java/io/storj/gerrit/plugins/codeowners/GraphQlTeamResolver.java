@@ -0,0 +1,184 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import org.apache.log4j.Logger;
+import org.kohsuke.github.authorization.AuthorizationProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+// GraphQlTeamResolver fetches the members of a team together with their emails with one GraphQL request per 100
+// members, instead of listing the members and then fetching every member that needs an email from `/users/{login}`.
+//
+// The email of a member is their public email, or else the first email they verified for a domain of the
+// organization.
+public class GraphQlTeamResolver implements TeamResolver {
+    private static final Logger log = Logger.getLogger(GraphQlTeamResolver.class);
+
+    private static final Gson GSON = new Gson();
+
+    static final String ENDPOINT = "https://api.github.com/graphql";
+
+    static final String QUERY = "query($org: String!, $team: String!, $cursor: String) {"
+            + " organization(login: $org) {"
+            + " team(slug: $team) {"
+            + " privacy"
+            + " members(first: 100, after: $cursor, membership: ALL) {"
+            + " pageInfo { hasNextPage endCursor }"
+            + " nodes { login email organizationVerifiedDomainEmails(login: $org) }"
+            + " } } } }";
+
+    private final URL endpoint;
+    private final AuthorizationProvider authorization;
+
+    public GraphQlTeamResolver(final URL endpoint, final AuthorizationProvider authorization) {
+        this.endpoint = endpoint;
+        this.authorization = authorization;
+    }
+
+    @Override
+    public TeamCache.Team load(final String orgName, final String teamName) throws IOException {
+        final TreeSet<String> logins = new TreeSet<>();
+        final Map<String, String> emails = new HashMap<>();
+
+        JsonElement cursor = JsonNull.INSTANCE;
+        while (true) {
+            final JsonObject variables = new JsonObject();
+            variables.addProperty("org", orgName);
+            variables.addProperty("team", teamName);
+            variables.add("cursor", cursor);
+
+            final JsonObject data = post(variables);
+
+            final JsonElement organization = data.get("organization");
+            if (organization == null || organization.isJsonNull()) {
+                log.warn(String.format("Github organization couldn't be found: '%s'", orgName));
+                return TeamCache.Team.NONE;
+            }
+
+            final JsonElement team = organization.getAsJsonObject().get("team");
+            if (team == null || team.isJsonNull()) {
+                log.warn(String.format("Github team couldn't be found: '%s/%s'", orgName, teamName));
+                return TeamCache.Team.NONE;
+            }
+            if ("SECRET".equals(string(team.getAsJsonObject(), "privacy"))) {
+                log.warn(String.format("Github team is secret: '%s/%s'", orgName, teamName));
+                return TeamCache.Team.NONE;
+            }
+
+            final JsonObject members = team.getAsJsonObject().getAsJsonObject("members");
+            for (final JsonElement node : members.getAsJsonArray("nodes")) {
+                if (node == null || node.isJsonNull()) {
+                    // a field of the member failed, see the errors of the response
+                    continue;
+                }
+                final JsonObject member = node.getAsJsonObject();
+                final String login = string(member, "login");
+                if (login == null) {
+                    continue;
+                }
+                logins.add(login);
+
+                final String email = email(member);
+                if (email != null) {
+                    emails.put(login, email);
+                }
+            }
+
+            final JsonObject pageInfo = members.getAsJsonObject("pageInfo");
+            if (!pageInfo.get("hasNextPage").getAsBoolean()) {
+                break;
+            }
+            cursor = pageInfo.get("endCursor");
+        }
+
+        return new TeamCache.Team(ImmutableList.copyOf(logins), ImmutableMap.copyOf(emails));
+    }
+
+    private JsonObject post(final JsonObject variables) throws IOException {
+        final JsonObject request = new JsonObject();
+        request.addProperty("query", QUERY);
+        request.add("variables", variables);
+        final byte[] body = request.toString().getBytes(StandardCharsets.UTF_8);
+
+        final HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(10_000);
+            connection.setReadTimeout(30_000);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Accept", "application/json");
+            final String encoded = authorization.getEncodedAuthorization();
+            if (encoded != null) {
+                connection.setRequestProperty("Authorization", encoded);
+            }
+            connection.setFixedLengthStreamingMode(body.length);
+            try (final OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+
+            final int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException(String.format("GraphQL request to %s failed with %d", endpoint, status));
+            }
+
+            final JsonObject response;
+            try (final InputStream in = connection.getInputStream();
+                 final Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                response = GSON.fromJson(reader, JsonObject.class);
+            }
+
+            final JsonElement data = response.get("data");
+            if (data == null || data.isJsonNull()) {
+                throw new IOException("GraphQL request failed: " + response.get("errors"));
+            }
+            // missing organizations and teams are reported as errors next to null data, which are handled as such
+            final JsonElement errors = response.get("errors");
+            if (errors != null && !errors.isJsonNull()) {
+                // partial data, e.g. members whose verified emails the token may not read come back as null
+                log.warn(String.format("GraphQL request for %s returned partial data: %s", variables, errors));
+            }
+            return data.getAsJsonObject();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String email(final JsonObject member) {
+        final String email = string(member, "email");
+        if (email != null && !email.isEmpty()) {
+            return email;
+        }
+
+        final JsonElement verified = member.get("organizationVerifiedDomainEmails");
+        if (verified != null && verified.isJsonArray()) {
+            final JsonArray emails = verified.getAsJsonArray();
+            if (emails.size() > 0 && !emails.get(0).isJsonNull()) {
+                return emails.get(0).getAsString();
+            }
+        }
+
+        return null;
+    }
+
+    private static String string(final JsonObject object, final String name) {
+        final JsonElement element = object.get(name);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+}
@@ -1,6 +1,6 @@
 package io.storj.gerrit.plugins.codeowners;
 
-import java.math.BigInteger;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
@@ -11,27 +11,91 @@ public class HashRing {
     public interface Hasher extends Function<String, String> {
     }
 
-    public static Hasher MD5 = val -> {
-        try {
-            final MessageDigest md = MessageDigest.getInstance("MD5");
-            final byte[] digest = md.digest(val.getBytes());
-            final BigInteger no = new BigInteger(1, digest);
+    // Md5Hasher hashes with MD5, rendered as 32 lowercase hex characters. Rings using it keep their points as
+    // 128-bit numbers instead of strings, which order the same way.
+    static final class Md5Hasher implements Hasher {
+        private static final char[] HEX = "0123456789abcdef".toCharArray();
 
-            // Convert message digest into hex value
-            StringBuilder hashtext = new StringBuilder(no.toString(16));
-            while (hashtext.length() < 32) {
-                hashtext.insert(0, "0");
+        // MessageDigest is not thread safe, and looking one up is expensive, so keep one per thread
+        private static final ThreadLocal<Digest> DIGEST = ThreadLocal.withInitial(Digest::new);
+
+        private static final class Digest {
+            private final MessageDigest md;
+            private final byte[] out = new byte[16];
+
+            private Digest() {
+                try {
+                    md = MessageDigest.getInstance("MD5");
+                } catch (NoSuchAlgorithmException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+
+            private byte[] digest(final String val) {
+                md.update(val.getBytes());
+                try {
+                    md.digest(out, 0, out.length);
+                } catch (DigestException ex) {
+                    throw new RuntimeException(ex);
+                }
+                return out;
             }
+        }
+
+        @Override
+        public String apply(final String val) {
+            final byte[] digest = DIGEST.get().digest(val);
+            final char[] hex = new char[32];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+                hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+            }
+            return new String(hex);
+        }
 
-            return hashtext.toString();
-        } catch (NoSuchAlgorithmException ex) {
-            throw new RuntimeException(ex);
+        // hash stores the digest of val as two unsigned longs, most significant first.
+        static void hash(final String val, final long[] high, final long[] low, final int i) {
+            final byte[] digest = DIGEST.get().digest(val);
+            high[i] = toLong(digest, 0);
+            low[i] = toLong(digest, 8);
         }
-    };
+
+        // hash64 returns the most significant 64 bits of the digest of val.
+        static long hash64(final String val) {
+            return toLong(DIGEST.get().digest(val), 0);
+        }
+
+        // digest returns the digest of val in a buffer that is reused by the next call on the same thread.
+        static byte[] digest(final String val) {
+            return DIGEST.get().digest(val);
+        }
+
+        static long toLong(final byte[] bytes, final int offset) {
+            long value = 0;
+            for (int i = offset; i < offset + 8; i++) {
+                value = (value << 8) | (bytes[i] & 0xff);
+            }
+            return value;
+        }
+    }
+
+    public static Hasher MD5 = new Md5Hasher();
 
     private final Hasher hasher;
     private final LinkedHashMap<String, Integer> weights;
-    private final TreeMap<String, String> ring;
+
+    // names of the nodes, points refer to them by their index
+    private final String[] names;
+
+    // the ring, as parallel arrays sorted by hash: the node of every point, and the hash of the point. MD5 rings
+    // keep hashes as 128-bit numbers in high/low, other hashers as strings in keys.
+    private final int[] nodes;
+    private final long[] high;
+    private final long[] low;
+    private final String[] keys;
+
+    // number of points before points sharing a hash were dropped
+    private final int total;
 
     public HashRing() {
         this(MD5);
@@ -42,10 +106,234 @@ public class HashRing {
     }
 
 
-    private HashRing(final Hasher hasher, final LinkedHashMap<String, Integer> weights) {
+    HashRing(final Hasher hasher, final LinkedHashMap<String, Integer> weights) {
+        this.hasher = hasher;
+        this.weights = weights;
+        this.names = weights.keySet().toArray(new String[0]);
+
+        int total = 0;
+        for (final int weight : weights.values()) {
+            total += weight;
+        }
+        this.total = total;
+
+        final Points points = new Points(total, hasher instanceof Md5Hasher);
+        int i = 0;
+        int n = 0;
+        for (final int weight : weights.values()) {
+            hash(hasher, names[n], n, weight, points, i);
+            i += weight;
+            n++;
+        }
+
+        final Points ring = sort(points);
+        this.nodes = ring.nodes;
+        this.high = ring.high;
+        this.low = ring.low;
+        this.keys = ring.keys;
+    }
+
+    private HashRing(final Hasher hasher, final LinkedHashMap<String, Integer> weights, final String[] names,
+                     final Points ring, final int total) {
         this.hasher = hasher;
         this.weights = weights;
-        this.ring = new TreeMap<>();
+        this.names = names;
+        this.nodes = ring.nodes;
+        this.high = ring.high;
+        this.low = ring.low;
+        this.keys = ring.keys;
+        this.total = total;
+    }
+
+    // Points is a list of points as parallel arrays, like the ring itself.
+    private static final class Points {
+        private final int[] nodes;
+        private final long[] high;
+        private final long[] low;
+        private final String[] keys;
+
+        private Points(final int size, final boolean md5) {
+            this(new int[size], md5 ? new long[size] : null, md5 ? new long[size] : null, md5 ? null : new String[size]);
+        }
+
+        private Points(final int[] nodes, final long[] high, final long[] low, final String[] keys) {
+            this.nodes = nodes;
+            this.high = high;
+            this.low = low;
+            this.keys = keys;
+        }
+
+        private int size() {
+            return nodes.length;
+        }
+
+        private static int compare(final Points a, final int i, final Points b, final int j) {
+            if (a.keys != null) {
+                return a.keys[i].compareTo(b.keys[j]);
+            }
+
+            final int cmp = Long.compareUnsigned(a.high[i], b.high[j]);
+            return cmp != 0 ? cmp : Long.compareUnsigned(a.low[i], b.low[j]);
+        }
+
+        private void copy(final int from, final Points to, final int at, final int node) {
+            to.nodes[at] = node;
+            if (keys == null) {
+                to.high[at] = high[from];
+                to.low[at] = low[from];
+            } else {
+                to.keys[at] = keys[from];
+            }
+        }
+
+        private Points truncate(final int size) {
+            if (size == size()) {
+                return this;
+            }
+
+            return new Points(
+                    Arrays.copyOf(nodes, size),
+                    high == null ? null : Arrays.copyOf(high, size),
+                    low == null ? null : Arrays.copyOf(low, size),
+                    keys == null ? null : Arrays.copyOf(keys, size));
+        }
+    }
+
+    // hash stores the weight points of the node with index n in points, starting at offset.
+    private static void hash(final Hasher hasher, final String node, final int n, final int weight,
+                             final Points points, final int offset) {
+        for (int j = 0; j < weight; j++) {
+            points.nodes[offset + j] = n;
+            if (points.keys == null) {
+                Md5Hasher.hash(node + "-" + j, points.high, points.low, offset + j);
+            } else {
+                points.keys[offset + j] = hasher.apply(node + "-" + j);
+            }
+        }
+    }
+
+    // sort returns the points ordered by hash. The sort is stable so that of points sharing a hash the one added
+    // last is kept, like a map would.
+    private static Points sort(final Points points) {
+        final int size = points.size();
+        final int[] order = order(points);
+
+        final Points sorted = new Points(size, points.keys == null);
+        int n = 0;
+        for (int j = 0; j < size; j++) {
+            if (j + 1 < size && Points.compare(points, order[j], points, order[j + 1]) == 0) {
+                continue;
+            }
+            points.copy(order[j], sorted, n++, points.nodes[order[j]]);
+        }
+        return sorted.truncate(n);
+    }
+
+    // order returns the indexes of the points ordered by hash, stable. It's a bottom-up merge sort on primitive
+    // indexes, Arrays.sort would need them boxed to take a comparator.
+    private static int[] order(final Points points) {
+        final int size = points.size();
+        int[] order = new int[size];
+        int[] scratch = new int[size];
+        for (int j = 0; j < size; j++) {
+            order[j] = j;
+        }
+
+        for (int width = 1; width < size; width *= 2) {
+            for (int lo = 0; lo < size; lo += 2 * width) {
+                final int mid = Math.min(lo + width, size);
+                final int hi = Math.min(lo + 2 * width, size);
+                int i = lo;
+                int j = mid;
+                int k = lo;
+                while (i < mid && j < hi) {
+                    // on equal hashes the left one goes first, which keeps the sort stable
+                    scratch[k++] = Points.compare(points, order[j], points, order[i]) < 0 ? order[j++] : order[i++];
+                }
+                while (i < mid) {
+                    scratch[k++] = order[i++];
+                }
+                while (j < hi) {
+                    scratch[k++] = order[j++];
+                }
+            }
+
+            final int[] swap = order;
+            order = scratch;
+            scratch = swap;
+        }
+        return order;
+    }
+
+    // merge merges two sorted rings. Of points sharing a hash the one of the node added last is kept, which is the
+    // one sort would have kept.
+    private static Points merge(final Points a, final Points b) {
+        final Points merged = new Points(a.size() + b.size(), a.keys == null);
+
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.size() && j < b.size()) {
+            final int cmp = Points.compare(a, i, b, j);
+            if (cmp < 0) {
+                a.copy(i, merged, n++, a.nodes[i]);
+                i++;
+            } else if (cmp > 0) {
+                b.copy(j, merged, n++, b.nodes[j]);
+                j++;
+            } else {
+                if (a.nodes[i] > b.nodes[j]) {
+                    a.copy(i, merged, n++, a.nodes[i]);
+                } else {
+                    b.copy(j, merged, n++, b.nodes[j]);
+                }
+                i++;
+                j++;
+            }
+        }
+        for (; i < a.size(); i++) {
+            a.copy(i, merged, n++, a.nodes[i]);
+        }
+        for (; j < b.size(); j++) {
+            b.copy(j, merged, n++, b.nodes[j]);
+        }
+
+        return merged.truncate(n);
+    }
+
+    // without returns the ring without the points of the node with index n, renumbering the nodes after it when
+    // the node is removed altogether.
+    private static Points without(final Points points, final int n, final boolean renumber) {
+        final Points kept = new Points(points.size(), points.keys == null);
+
+        int size = 0;
+        for (int i = 0; i < points.size(); i++) {
+            final int node = points.nodes[i];
+            if (node != n) {
+                points.copy(i, kept, size++, renumber && node > n ? node - 1 : node);
+            }
+        }
+
+        return kept.truncate(size);
+    }
+
+    private Points points() {
+        return new Points(nodes, high, low, keys);
+    }
+
+    // dropped tells whether points were dropped for sharing their hash with a point of another node. Removing
+    // points of such a ring has to bring the dropped ones back, which only a rebuild can do.
+    private boolean dropped() {
+        return nodes.length < total;
+    }
+
+    private int indexOf(final String node) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(node)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     public static HashRing fromElements(final Hasher hasher, Collection<String> elements) throws NoSuchAlgorithmException {
@@ -53,51 +341,70 @@ public class HashRing {
         for (String element : elements) {
             weights.put(element, 1);
         }
-        HashRing hashRing = new HashRing(hasher, weights);
-        hashRing.make();
-        return hashRing;
+        return new HashRing(hasher, weights);
     }
 
     public int size() {
         return weights.size();
     }
 
-    private void make() throws NoSuchAlgorithmException {
-        for (final Map.Entry<String, Integer> entry : weights.entrySet()) {
-            final String node = entry.getKey();
-            final int weight = entry.getValue();
-
-            for (int i = 0; i < weight; i++) {
-                final String key = hasher.apply(node + "-" + i);
-                ring.put(key, node);
-            }
-        }
-    }
-
     public HashRing withNode(final String node) throws NoSuchAlgorithmException {
         return withWeightedNode(node, 1);
     }
 
+    // withWeightedNode and withoutNode share the points of this ring and only hash the points of the node, the
+    // result is the same as building the ring from scratch.
     public HashRing withWeightedNode(final String node, final int weight) throws NoSuchAlgorithmException {
         if (weight <= 0) {
             return this;
         }
 
         final LinkedHashMap<String, Integer> weights = new LinkedHashMap<>(this.weights);
-        weights.put(node, weight);
+        final Integer previous = weights.put(node, weight);
+        if (previous != null && previous == weight) {
+            return this;
+        }
 
-        final HashRing ring = new HashRing(hasher, weights);
-        ring.make();
-        return ring;
+        final String[] names;
+        final int n;
+        final Points kept;
+        if (previous == null) {
+            n = this.names.length;
+            names = Arrays.copyOf(this.names, n + 1);
+            names[n] = node;
+            kept = points();
+        } else if (dropped()) {
+            return new HashRing(hasher, weights);
+        } else {
+            n = indexOf(node);
+            names = this.names;
+            kept = without(points(), n, false);
+        }
+
+        final Points added = new Points(weight, keys == null);
+        hash(hasher, node, n, weight, added, 0);
+
+        return new HashRing(hasher, weights, names, merge(kept, sort(added)),
+                total - (previous == null ? 0 : previous) + weight);
     }
 
     public HashRing withoutNode(final String node) throws NoSuchAlgorithmException {
+        final int n = indexOf(node);
+        if (n < 0) {
+            return this;
+        }
+
         final LinkedHashMap<String, Integer> weights = new LinkedHashMap<>(this.weights);
-        weights.remove(node);
+        final int weight = weights.remove(node);
+        if (dropped()) {
+            return new HashRing(hasher, weights);
+        }
 
-        final HashRing ring = new HashRing(hasher, weights);
-        ring.make();
-        return ring;
+        final String[] names = new String[this.names.length - 1];
+        System.arraycopy(this.names, 0, names, 0, n);
+        System.arraycopy(this.names, n + 1, names, n, names.length - n);
+
+        return new HashRing(hasher, weights, names, without(points(), n, true), total - weight);
     }
 
     public String getNode(final String key) throws NoSuchAlgorithmException {
@@ -116,19 +423,33 @@ public class HashRing {
         }
 
         final Set<String> nodes = new LinkedHashSet<>();
-        final String needle = hasher.apply(key);
 
-        Iterator<Map.Entry<String, String>> iterator = ring.tailMap(needle, false).entrySet().iterator();
-        while (iterator.hasNext()) {
-            nodes.add(iterator.next().getValue());
+        // walk clockwise from the first point after the key up to the last point before it, a point equal to the
+        // key is skipped
+        final int first;
+        final int last;
+        if (keys == null) {
+            final byte[] needle = Md5Hasher.digest(key);
+            final long high = Md5Hasher.toLong(needle, 0);
+            final long low = Md5Hasher.toLong(needle, 8);
+
+            first = search(high, low, true);
+            last = search(high, low, false);
+        } else {
+            final String needle = hasher.apply(key);
+            first = search(needle, true);
+            last = search(needle, false);
+        }
+
+        for (int i = first; i < this.nodes.length; i++) {
+            nodes.add(names[this.nodes[i]]);
             if (nodes.size() == size) {
                 return nodes;
             }
         }
 
-        iterator = ring.headMap(needle, false).entrySet().iterator();
-        while (iterator.hasNext()) {
-            nodes.add(iterator.next().getValue());
+        for (int i = 0; i < last; i++) {
+            nodes.add(names[this.nodes[i]]);
             if (nodes.size() == size) {
                 return nodes;
             }
@@ -136,4 +457,39 @@ public class HashRing {
 
         return nodes;
     }
+
+    // search returns the index of the first point after the needle, or of the first point not before it.
+    private int search(final long high, final long low, final boolean after) {
+        int lo = 0;
+        int hi = nodes.length;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            int cmp = Long.compareUnsigned(this.high[mid], high);
+            if (cmp == 0) {
+                cmp = Long.compareUnsigned(this.low[mid], low);
+            }
+
+            if (cmp < 0 || (after && cmp == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int search(final String needle, final boolean after) {
+        int lo = 0;
+        int hi = nodes.length;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int cmp = keys[mid].compareTo(needle);
+            if (cmp < 0 || (after && cmp == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
 }
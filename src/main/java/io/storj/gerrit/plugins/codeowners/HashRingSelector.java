@@ -0,0 +1,27 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+// HashRingSelector places every candidate once on an MD5 hash ring and walks it clockwise from the change, the way
+// reviewers have always been assigned.
+public class HashRingSelector implements ReviewerSelector {
+    @Override
+    public String name() {
+        return "hash-ring";
+    }
+
+    @Override
+    public Pool pool(final Collection<String> candidates) {
+        final HashRing ring;
+        try {
+            ring = HashRing.fromElements(HashRing.MD5, new ArrayList<>(candidates));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        // the ring returns all nodes for a negative size
+        return (changeId, count) -> count <= 0 ? new LinkedHashSet<>() : ring.getNodes(changeId, count);
+    }
+}
@@ -0,0 +1,92 @@
+package io.storj.gerrit.plugins.codeowners;
+
+// IntSet is a set of ints backed by an open addressing table, without boxing. It is not thread safe, but safe to
+// share once it is no longer modified.
+final class IntSet {
+    // 0 marks empty slots, hence it is tracked separately
+    private int[] slots;
+    private boolean zero;
+    private int size;
+
+    IntSet() {
+        this(8);
+    }
+
+    IntSet(final int expected) {
+        int capacity = 8;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        slots = new int[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(final int value) {
+        if (value == 0) {
+            return zero;
+        }
+
+        final int mask = slots.length - 1;
+        for (int i = index(value, mask); ; i = (i + 1) & mask) {
+            final int slot = slots[i];
+            if (slot == value) {
+                return true;
+            }
+            if (slot == 0) {
+                return false;
+            }
+        }
+    }
+
+    boolean add(final int value) {
+        if (value == 0) {
+            if (zero) {
+                return false;
+            }
+            zero = true;
+            size++;
+            return true;
+        }
+
+        final int mask = slots.length - 1;
+        int i = index(value, mask);
+        while (slots[i] != 0) {
+            if (slots[i] == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+
+        slots[i] = value;
+        size++;
+        // keep the table at most half full, probes stay short
+        if (size * 2 > slots.length) {
+            grow();
+        }
+        return true;
+    }
+
+    private void grow() {
+        final int[] old = slots;
+        slots = new int[old.length * 2];
+        final int mask = slots.length - 1;
+        for (final int value : old) {
+            if (value != 0) {
+                int i = index(value, mask);
+                while (slots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = value;
+            }
+        }
+    }
+
+    private static int index(final int value, final int mask) {
+        // account ids are sequential, spread them over the table
+        final int h = value * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
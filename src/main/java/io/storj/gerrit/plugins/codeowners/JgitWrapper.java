@@ -17,6 +17,8 @@
 // Modifications from original:
 // - Updated package for project.
 // - Modified getBlobAsBytes to not throw and exception and instead to return an empty optional.
+// - Added findFirstBlob to look up several candidate files with a single tree walk.
+// - Added openBlob to stream a blob with an upper bound on its size, getBlobAsBytes reads through it.
 //
 // Copyright (C) 2022 Mya Pitzeruse
 //
@@ -35,14 +37,20 @@
 package io.storj.gerrit.plugins.codeowners;
 
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
@@ -52,42 +60,93 @@ import static org.eclipse.jgit.lib.FileMode.TYPE_MASK;
 public class JgitWrapper {
     private static final Logger log = LoggerFactory.getLogger(JgitWrapper.class);
 
-    public static Optional<byte[]> getBlobAsBytes(Repository repository, String revision, String path) {
-        final RevCommit commit;
+    // Blob is a file found at a revision.
+    public static class Blob {
+        public final String path;
+        public final ObjectId id;
 
-        try {
+        Blob(final String path, final ObjectId id) {
+            this.path = path;
+            this.id = id;
+        }
+    }
+
+    // BlobTooLargeException is thrown when a blob exceeds the size a caller is willing to read.
+    public static class BlobTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public BlobTooLargeException(final ObjectId id, final long size, final long limit) {
+            super(String.format("blob %s is %d bytes, exceeding the limit of %d bytes", id.name(), size, limit));
+        }
+    }
+
+    public static Optional<byte[]> getBlobAsBytes(Repository repository, String revision, String path, long maxSize) {
+        return findFirstBlob(repository, revision, Collections.singletonList(path))
+                .flatMap(blob -> readBlob(repository, blob.id, maxSize));
+    }
+
+    // findFirstBlob returns the first of the candidate paths which is a file at the revision. The revision is
+    // resolved once and its tree is walked once for all candidates, sharing a single object reader.
+    public static Optional<Blob> findFirstBlob(Repository repository, String revision, List<String> paths) {
+        try (final ObjectReader reader = repository.newObjectReader();
+             final RevWalk revWalk = new RevWalk(reader);
+             final TreeWalk treeWalk = new TreeWalk(repository, reader)) {
             final ObjectId objectId = repository.resolve(revision);
             if (objectId == null) {
                 return Optional.empty();
             }
 
-            commit = parseCommit(repository, objectId);
-        } catch (final IOException e) {
-            log.error("failed to resolve revision", e);
-            return Optional.empty();
-        }
+            revWalk.setRetainBody(false);
+            final RevCommit commit = revWalk.parseCommit(objectId);
+
+            treeWalk.addTree(commit.getTree());
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(PathFilterGroup.createFromStrings(paths));
+
+            final ObjectId[] found = new ObjectId[paths.size()];
+            while (treeWalk.next()) {
+                if ((treeWalk.getRawMode(0) & TYPE_MASK) != TYPE_FILE) {
+                    continue;
+                }
+
+                final int index = paths.indexOf(treeWalk.getPathString());
+                if (index < 0) {
+                    continue;
+                }
+
+                found[index] = treeWalk.getObjectId(0);
+                if (index == 0) {
+                    // nothing can take precedence over the first candidate
+                    break;
+                }
+            }
+
+            for (int i = 0; i < found.length; i++) {
+                if (found[i] != null) {
+                    return Optional.of(new Blob(paths.get(i), found[i]));
+                }
+            }
 
-        try (final TreeWalk w = TreeWalk.forPath(repository, path, commit.getTree())) {
-            return Optional.ofNullable(w)
-                    .filter(walk -> (walk.getRawMode(0) & TYPE_MASK) == TYPE_FILE)
-                    .map(walk -> walk.getObjectId(0))
-                    .flatMap(id -> readBlob(repository, id));
+            return Optional.empty();
         } catch (final IOException e) {
-            log.error("failed to read file at revision", e);
+            log.error("failed to read files at revision", e);
             return Optional.empty();
         }
     }
 
-    private static RevCommit parseCommit(Repository repository, ObjectId commit) throws IOException {
-        try (final RevWalk walk = new RevWalk(repository)) {
-            walk.setRetainBody(true);
-            return walk.parseCommit(commit);
+    // openBlob opens a stream over the blob, refusing blobs larger than maxSize before any of the content is read.
+    public static InputStream openBlob(Repository repository, ObjectId id, long maxSize) throws IOException {
+        final ObjectLoader loader = repository.open(id, OBJ_BLOB);
+        if (loader.getSize() > maxSize) {
+            throw new BlobTooLargeException(id, loader.getSize(), maxSize);
         }
+
+        return loader.openStream();
     }
 
-    private static Optional<byte[]> readBlob(Repository repository, ObjectId id) {
-        try {
-            return Optional.of(repository.open(id, OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE));
+    private static Optional<byte[]> readBlob(Repository repository, ObjectId id, long maxSize) {
+        try (final InputStream stream = openBlob(repository, id, maxSize)) {
+            return Optional.of(stream.readAllBytes());
         } catch (Exception e) {
             log.error("unexpected error while reading git object " + id, e);
             return Optional.empty();
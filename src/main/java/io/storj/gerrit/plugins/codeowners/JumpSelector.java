@@ -0,0 +1,54 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import java.util.*;
+
+// JumpSelector implements jump consistent hashing (Lamping & Veach) over the sorted candidates. It needs no memory
+// beyond the candidates and is very fast, but candidates are buckets by position, so it is best suited for pools
+// that mostly grow at the end.
+public class JumpSelector implements ReviewerSelector {
+    @Override
+    public String name() {
+        return "jump";
+    }
+
+    // bucket maps a key to one of the buckets in [0, buckets).
+    static int bucket(long key, final int buckets) {
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+
+    @Override
+    public Pool pool(final Collection<String> candidates) {
+        final String[] names = new TreeSet<>(candidates).toArray(new String[0]);
+
+        return (changeId, count) -> {
+            final Set<String> chosen = new LinkedHashSet<>();
+            final int wanted = Math.min(count, names.length);
+            if (wanted <= 0) {
+                return chosen;
+            }
+
+            // every further reviewer is jumped to with a re-hashed key, skipping reviewers picked already
+            long key = HashRing.Md5Hasher.hash64(changeId);
+            int last = 0;
+            for (int attempt = 0; chosen.size() < wanted && attempt < wanted * 16; attempt++) {
+                last = bucket(key, names.length);
+                chosen.add(names[last]);
+                key = ReviewerSelector.mix(key + attempt + 1);
+            }
+
+            // unlucky draws, fill up with the next candidates in order
+            for (int i = 1; chosen.size() < wanted; i++) {
+                chosen.add(names[(last + i) % names.length]);
+            }
+
+            return chosen;
+        };
+    }
+}
@@ -0,0 +1,98 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import java.util.*;
+
+// MaglevSelector implements Maglev hashing: candidates take turns claiming slots of a lookup table, each following
+// its own permutation of the slots, so every candidate owns almost exactly the same share of the table. A lookup is
+// a single array access, building the table costs O(slots).
+public class MaglevSelector implements ReviewerSelector {
+    // slots per candidate, higher values spread changes more evenly and move fewer of them when candidates change
+    private static final int SLOTS_PER_CANDIDATE = 100;
+
+    @Override
+    public String name() {
+        return "maglev";
+    }
+
+    @Override
+    public int weight(final int candidates) {
+        return candidates * (1 + SLOTS_PER_CANDIDATE);
+    }
+
+    @Override
+    public Pool pool(final Collection<String> candidates) {
+        final String[] names = new TreeSet<>(candidates).toArray(new String[0]);
+        final int[] table = table(names);
+
+        return (changeId, count) -> {
+            final Set<String> chosen = new LinkedHashSet<>();
+            final int wanted = Math.min(count, names.length);
+            if (wanted <= 0) {
+                return chosen;
+            }
+
+            // walk the table from the slot of the change until enough distinct reviewers are found
+            final int start = (int) Long.remainderUnsigned(HashRing.Md5Hasher.hash64(changeId), table.length);
+            for (int i = 0; chosen.size() < wanted; i++) {
+                chosen.add(names[table[(start + i) % table.length]]);
+            }
+
+            return chosen;
+        };
+    }
+
+    static int[] table(final String[] names) {
+        if (names.length == 0) {
+            return new int[0];
+        }
+
+        final int size = nextPrime(Math.max(names.length * SLOTS_PER_CANDIDATE, 7));
+        final int[] offsets = new int[names.length];
+        final int[] skips = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            final long hash = HashRing.Md5Hasher.hash64(names[i]);
+            offsets[i] = (int) Long.remainderUnsigned(hash, size);
+            skips[i] = (int) Long.remainderUnsigned(ReviewerSelector.mix(hash), size - 1) + 1;
+        }
+
+        final int[] table = new int[size];
+        Arrays.fill(table, -1);
+        final int[] next = new int[names.length];
+
+        int filled = 0;
+        while (true) {
+            for (int i = 0; i < names.length; i++) {
+                int slot = (int) ((offsets[i] + (long) next[i] * skips[i]) % size);
+                while (table[slot] >= 0) {
+                    next[i]++;
+                    slot = (int) ((offsets[i] + (long) next[i] * skips[i]) % size);
+                }
+
+                table[slot] = i;
+                next[i]++;
+                if (++filled == size) {
+                    return table;
+                }
+            }
+        }
+    }
+
+    private static int nextPrime(int n) {
+        while (!isPrime(n)) {
+            n++;
+        }
+        return n;
+    }
+
+    private static boolean isPrime(final int n) {
+        if (n < 2 || n % 2 == 0) {
+            return n == 2;
+        }
+        for (int i = 3; (long) i * i <= n; i += 2) {
+            if (n % i == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
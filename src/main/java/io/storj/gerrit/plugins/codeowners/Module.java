@@ -1,9 +1,12 @@
 package io.storj.gerrit.plugins.codeowners;
 
+import com.google.gerrit.extensions.annotations.PluginData;
 import com.google.gerrit.extensions.events.CommentAddedListener;
+import com.google.gerrit.extensions.events.GroupIndexedListener;
 import com.google.gerrit.extensions.events.RevisionCreatedListener;
 import com.google.gerrit.extensions.events.WorkInProgressStateChangedListener;
 import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.lifecycle.LifecycleModule;
 import com.google.gerrit.server.config.PluginConfig;
 import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.config.SitePaths;
@@ -12,9 +15,14 @@ import com.google.inject.Binder;
 import com.google.inject.Inject;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.authorization.AuthorizationProvider;
+import org.kohsuke.github.authorization.ImmutableAuthorizationProvider;
+import org.kohsuke.github.connector.GitHubConnector;
 import org.kohsuke.github.extras.authorization.JWTTokenProvider;
 
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.GeneralSecurityException;
@@ -24,6 +32,9 @@ public class Module extends AbstractModule {
     private PluginConfigFactory cfg;
     @Inject
     private SitePaths sitePaths;
+    @Inject
+    @PluginData
+    private Path dataDir;
 
     public static class MissingRequiredConfiguration extends RuntimeException {
         public MissingRequiredConfiguration(final String message, final Throwable cause) {
@@ -50,6 +61,23 @@ public class Module extends AbstractModule {
         long githubInstanceID = config.getLong("githubInstanceID", 0);
         String githubKeyPath = config.getString("githubKeyPath", "");
 
+        // responses of GitHub are cached on disk and revalidated with conditional requests, 0 disables the cache
+        long githubCacheSize = config.getLong("githubCacheSize", 32 * 1024 * 1024);
+
+        // requests left in the rate limit window that are kept for loading teams and other urgent lookups
+        long githubRateLimitReserve = config.getLong("githubRateLimitReserve", 500);
+
+        final RateLimitGovernor governor = new RateLimitGovernor(githubRateLimitReserve);
+        GitHubConnector connector = new RateLimitedGitHubConnector(GitHubConnector.DEFAULT, governor);
+        if (githubCacheSize > 0) {
+            try {
+                connector = new CachingGitHubConnector(connector, new ResponseStore(dataDir.resolve("github"), githubCacheSize), governor);
+            } catch (final IOException e) {
+                throw new UnableToCreateGithubInstance("creating the github response cache failed", e);
+            }
+        }
+
+        final AuthorizationProvider authorization;
         final GitHub github;
 
         try {
@@ -64,13 +92,13 @@ public class Module extends AbstractModule {
                     throw new MissingRequiredConfiguration("unable to find key: " + githubKeyPath);
 
                 JWTTokenProvider appAuth = new JWTTokenProvider(githubAppID, keyPath);
-                OrgInstanceAuthorizationProvider instanceAuth = new OrgInstanceAuthorizationProvider(githubInstanceID, appAuth);
-                github = new GitHubBuilder().withAuthorizationProvider(instanceAuth).build();
+                authorization = new OrgInstanceAuthorizationProvider(githubInstanceID, appAuth, governor);
             } else if (!githubToken.equals("")){
-                github = new GitHubBuilder().withJwtToken(githubToken).build();
+                authorization = ImmutableAuthorizationProvider.fromJwtToken(githubToken);
             } else {
                 throw new MissingRequiredConfiguration("github client authentication not configured");
             }
+            github = new GitHubBuilder().withConnector(connector).withAuthorizationProvider(authorization).build();
         } catch (final IOException e) {
             // rethrow, missing required configuration
             throw new MissingRequiredConfiguration("missing required environment variables", e);
@@ -78,14 +106,53 @@ public class Module extends AbstractModule {
             throw new UnableToCreateGithubInstance("creating a github client failed", e);
         }
 
+        final String accountResolver = config.getString("accountResolver", AccountResolver.QUERY);
+        final String teamResolver = config.getString("teamResolver", TeamResolver.REST);
+        final String githubGraphQlEndpoint = config.getString("githubGraphQlEndpoint", GraphQlTeamResolver.ENDPOINT);
+
         final Binder binder = binder();
 
         // Guice bindings
         binder.bind(GitHub.class).toInstance(github);
+        binder.bind(RateLimitGovernor.class).toInstance(governor);
+        binder.bind(RateLimitMetrics.class).asEagerSingleton();
+        install(ConfigCache.module());
+        install(ReviewerPoolCache.module());
+        install(AccountIdCache.module());
+        install(TeamCache.module());
+        install(new LifecycleModule() {
+            @Override
+            protected void configure() {
+                listener().to(ResolverExecutor.class);
+                listener().to(AssignmentQueue.class);
+                if (authorization instanceof OrgInstanceAuthorizationProvider) {
+                    listener().toInstance((OrgInstanceAuthorizationProvider) authorization);
+                }
+            }
+        });
+        if (accountResolver.equals(AccountResolver.EXTERNAL_IDS)) {
+            binder.bind(AccountResolver.class).to(ExternalIdAccountResolver.class);
+        } else if (accountResolver.equals(AccountResolver.QUERY)) {
+            binder.bind(AccountResolver.class).to(QueryAccountResolver.class);
+        } else {
+            throw new MissingRequiredConfiguration("unknown accountResolver: " + accountResolver);
+        }
+        if (teamResolver.equals(TeamResolver.GRAPHQL)) {
+            try {
+                binder.bind(TeamResolver.class).toInstance(new GraphQlTeamResolver(new URL(githubGraphQlEndpoint), authorization));
+            } catch (final MalformedURLException e) {
+                throw new MissingRequiredConfiguration("invalid githubGraphQlEndpoint: " + githubGraphQlEndpoint, e);
+            }
+        } else if (teamResolver.equals(TeamResolver.REST)) {
+            binder.bind(TeamResolver.class).to(RestTeamResolver.class);
+        } else {
+            throw new MissingRequiredConfiguration("unknown teamResolver: " + teamResolver);
+        }
 
         // Gerrit bindings
         DynamicSet.bind(binder, WorkInProgressStateChangedListener.class).to(ReviewAssigner.class);
         DynamicSet.bind(binder, CommentAddedListener.class).to(ReviewAssigner.class);
         DynamicSet.bind(binder, RevisionCreatedListener.class).to(ReviewAssigner.class);
+        DynamicSet.bind(binder, GroupIndexedListener.class).to(ReviewerGroup.class);
     }
 }
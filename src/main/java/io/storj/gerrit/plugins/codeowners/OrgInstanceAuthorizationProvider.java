@@ -1,46 +1,132 @@
 package io.storj.gerrit.plugins.codeowners;
 
+import com.google.gerrit.extensions.events.LifecycleListener;
+import org.apache.log4j.Logger;
 import org.kohsuke.github.GHAppInstallation;
 import org.kohsuke.github.GHAppInstallationToken;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.authorization.AuthorizationProvider;
 
-import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 // OrgInstanceAuthorizationProvider implements automatic refreshing token that can be used to do
 // per instance operations.
-public class OrgInstanceAuthorizationProvider extends GitHub.DependentAuthorizationProvider {
+//
+// Requests read the current token without locking. Tokens are replaced in the background 15 minutes before they
+// expire, a failed refresh is retried every minute while requests keep using the current token. Only when there is no
+// token that is still valid for 5 minutes, requests wait for a new one, fetched once for all of them.
+//
+// Tokens are fetched as the GitHub app, those requests count against the rate limit of the app and are exempt from
+// the RateLimitGovernor, which keeps the budget of the installation.
+public class OrgInstanceAuthorizationProvider extends GitHub.DependentAuthorizationProvider implements LifecycleListener {
+    private static final Logger log = Logger.getLogger(OrgInstanceAuthorizationProvider.class);
+
+    private static final Duration VALID_BEFORE_EXPIRY = Duration.ofMinutes(5);
+    private static final Duration REFRESH_BEFORE_EXPIRY = Duration.ofMinutes(15);
+    private static final Duration RETRY = Duration.ofMinutes(1);
+
+    static final class Token {
+        final String authorization;
+        final Instant expiresAt;
+        final Instant validUntil;
+
+        Token(final String token, final Instant expiresAt) {
+            this.authorization = String.format("token %s", token);
+            this.expiresAt = expiresAt;
+            this.validUntil = expiresAt.minus(VALID_BEFORE_EXPIRY);
+        }
+    }
+
     private final long instanceID;
-    private String authorization;
-    @Nonnull
-    private Instant validUntil;
+    private final RateLimitGovernor governor;
+    private final ScheduledExecutorService executor;
+
+    private volatile Token token;
+    // guarded by this
+    private ScheduledFuture<?> refresh;
 
-    public OrgInstanceAuthorizationProvider(long instanceID, AuthorizationProvider authorizationProvider) {
+    public OrgInstanceAuthorizationProvider(long instanceID, AuthorizationProvider authorizationProvider, RateLimitGovernor governor) {
+        this(instanceID, authorizationProvider, governor, Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            final Thread thread = new Thread(runnable, "CodeOwners-TokenRefresh");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    OrgInstanceAuthorizationProvider(long instanceID, AuthorizationProvider authorizationProvider, RateLimitGovernor governor, ScheduledExecutorService executor) {
         super(authorizationProvider);
-        this.validUntil = Instant.MIN;
         this.instanceID = instanceID;
+        this.governor = governor;
+        this.executor = executor;
     }
 
     public String getEncodedAuthorization() throws IOException {
-        synchronized(this) {
-            if (this.authorization == null || Instant.now().isAfter(this.validUntil)) {
-                String token = this.refreshToken();
-                this.authorization = String.format("token %s", token);
+        Token current = this.token;
+        if (current != null && Instant.now().isBefore(current.validUntil)) {
+            return current.authorization;
+        }
+
+        synchronized (this) {
+            // another request may have fetched one meanwhile
+            current = this.token;
+            if (current == null || !Instant.now().isBefore(current.validUntil)) {
+                current = this.governor.exempt(this::fetchToken);
+                this.token = current;
+                this.scheduleRefresh(current.expiresAt.minus(REFRESH_BEFORE_EXPIRY));
             }
 
-            return this.authorization;
+            return current.authorization;
         }
     }
 
-    private String refreshToken() throws IOException {
+    private void refresh() {
+        try {
+            final Token fresh = this.governor.exempt(this::fetchToken);
+            synchronized (this) {
+                this.token = fresh;
+                this.scheduleRefresh(fresh.expiresAt.minus(REFRESH_BEFORE_EXPIRY));
+            }
+        } catch (final IOException | RuntimeException e) {
+            log.warn("refreshing the GitHub installation token failed, retrying in " + RETRY, e);
+            synchronized (this) {
+                this.scheduleRefresh(Instant.now().plus(RETRY));
+            }
+        }
+    }
+
+    // guarded by this
+    private void scheduleRefresh(final Instant at) {
+        if (this.refresh != null) {
+            this.refresh.cancel(false);
+        }
+        if (this.executor.isShutdown()) {
+            return;
+        }
+
+        final long delay = Math.max(0, Duration.between(Instant.now(), at).toMillis());
+        this.refresh = this.executor.schedule(this::refresh, delay, TimeUnit.MILLISECONDS);
+    }
+
+    Token fetchToken() throws IOException {
         GitHub gitHub = this.gitHub();
         GHAppInstallation installationByOrganization = gitHub.getApp().getInstallationById(this.instanceID);
         GHAppInstallationToken ghAppInstallationToken = installationByOrganization.createToken().create();
-        this.validUntil = ghAppInstallationToken.getExpiresAt().toInstant().minus(Duration.ofMinutes(5L));
-        return (String) Objects.requireNonNull(ghAppInstallationToken.getToken());
+        return new Token(Objects.requireNonNull(ghAppInstallationToken.getToken()), ghAppInstallationToken.getExpiresAt().toInstant());
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+        this.executor.shutdownNow();
     }
 }
@@ -0,0 +1,158 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.collect.Iterables;
+import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.client.ListAccountsOption;
+import com.google.gerrit.extensions.common.AccountInfo;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// QueryAccountResolver resolves accounts with account queries through the gerrit API. Batches are resolved with one
+// query per BATCH_SIZE names, OR-ing the terms together, and mapped back by the username and preferred email of the
+// accounts. Secondary emails are only visible to administrators, so when an account was found by one of them the
+// emails left are looked up one by one.
+//
+// An email belongs to the account having it as preferred email, otherwise to the first account found, both for
+// single lookups and batches.
+@Singleton
+public class QueryAccountResolver implements AccountResolver {
+    static final int BATCH_SIZE = 50;
+    private static final int LIMIT = 500;
+
+    private final GerritApi gerrit;
+
+    @Inject
+    public QueryAccountResolver(final GerritApi gerrit) {
+        this.gerrit = gerrit;
+    }
+
+    @Override
+    public Integer byUsername(final String username) throws RestApiException {
+        return first("username:" + username);
+    }
+
+    @Override
+    public Integer byEmail(final String email) throws RestApiException {
+        final List<AccountInfo> accounts = gerrit.accounts().query("email:" + email).withOptions(ListAccountsOption.DETAILS).get();
+        if (accounts.size() == 0) {
+            // did not find a suitable match
+            return null;
+        }
+
+        for (final AccountInfo account : accounts) {
+            if (email.equalsIgnoreCase(account.email)) {
+                return account._accountId;
+            }
+        }
+        return accounts.get(0)._accountId;
+    }
+
+    @Override
+    public Map<String, Integer> byUsernames(final Collection<String> usernames) throws RestApiException {
+        final Map<String, Integer> ids = new HashMap<>();
+        for (final List<String> batch : Iterables.partition(usernames, BATCH_SIZE)) {
+            final Map<String, String> terms = terms(batch);
+            final List<AccountInfo> accounts = query("username", batch, ListAccountsOption.DETAILS);
+            for (final AccountInfo account : accounts) {
+                match(terms, account.username, account, ids);
+            }
+
+            if (truncated(accounts)) {
+                for (final String username : batch) {
+                    if (!ids.containsKey(username)) {
+                        put(ids, username, byUsername(username));
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public Map<String, Integer> byEmails(final Collection<String> emails) throws RestApiException {
+        final Map<String, Integer> ids = new HashMap<>();
+        for (final List<String> batch : Iterables.partition(emails, BATCH_SIZE)) {
+            final Map<String, String> terms = terms(batch);
+            final List<AccountInfo> accounts = query("email", batch, ListAccountsOption.DETAILS);
+            boolean secondary = false;
+            for (final AccountInfo account : accounts) {
+                if (!match(terms, account.email, account, ids)) {
+                    // found by a secondary email, which one isn't known
+                    secondary = true;
+                }
+            }
+
+            if (secondary || truncated(accounts)) {
+                for (final String email : batch) {
+                    if (!ids.containsKey(email)) {
+                        put(ids, email, byEmail(email));
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    private Integer first(final String query) throws RestApiException {
+        final List<AccountInfo> accounts = gerrit.accounts().query(query).get();
+        if (accounts.size() == 0) {
+            // did not find a suitable match
+            return null;
+        }
+
+        return accounts.get(0)._accountId;
+    }
+
+    private List<AccountInfo> query(final String operator, final List<String> values, final ListAccountsOption... options) throws RestApiException {
+        final StringBuilder query = new StringBuilder();
+        for (final String value : values) {
+            if (query.length() > 0) {
+                query.append(" OR ");
+            }
+            query.append(operator).append(":\"").append(value).append('"');
+        }
+
+        return gerrit.accounts().query(query.toString()).withLimit(LIMIT).withOptions(options).get();
+    }
+
+    // terms maps the lower case form of every term to the term, usernames and emails match case-insensitively
+    private static Map<String, String> terms(final List<String> batch) {
+        final Map<String, String> terms = new HashMap<>();
+        for (final String term : batch) {
+            terms.putIfAbsent(term.toLowerCase(Locale.US), term);
+        }
+        return terms;
+    }
+
+    // match records the account for the term matching value, the first account found for a term wins like it does
+    // for single lookups. It returns whether value matched any term.
+    private static boolean match(final Map<String, String> terms, final String value, final AccountInfo account, final Map<String, Integer> ids) {
+        if (value == null) {
+            return false;
+        }
+
+        final String term = terms.get(value.toLowerCase(Locale.US));
+        if (term == null) {
+            return false;
+        }
+        ids.putIfAbsent(term, account._accountId);
+        return true;
+    }
+
+    private static boolean truncated(final List<AccountInfo> accounts) {
+        return !accounts.isEmpty() && Boolean.TRUE.equals(accounts.get(accounts.size() - 1)._moreAccounts);
+    }
+
+    private static void put(final Map<String, Integer> ids, final String term, final Integer id) {
+        if (id != null) {
+            ids.put(term, id);
+        }
+    }
+}
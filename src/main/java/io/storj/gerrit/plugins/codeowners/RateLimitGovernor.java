@@ -0,0 +1,252 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import org.apache.log4j.Logger;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+// RateLimitGovernor keeps track of the GitHub rate limit budget from the `X-RateLimit-*` headers of responses and
+// decides which requests may still be sent when it runs low, so a push storm doesn't exhaust the quota for everything
+// else:
+//
+// - HIGH requests (loading and refreshing teams, only teams in use get refreshed) may use up the budget;
+// - NORMAL requests stop at half of `githubRateLimitReserve` (default 500) remaining requests;
+// - LOW requests (fetching users for their email, which only refines the owners) stop at the reserve.
+//
+// A request that may not be sent waits for the next rate limit window if it starts before the deadline of the request,
+// otherwise it fails with Throttled right away. Callers fall back to cached data: stale GitHub responses, the current
+// members of teams or owners resolved without them.
+//
+// The remaining budget GitHub reports is authoritative, between responses it's counted down for the requests sent.
+// Conditional requests answered with 304 don't count against the limit, the next response gives them back.
+//
+// Requests authenticated as the GitHub app itself, fetching installation tokens, count against a limit of their own
+// and are exempt.
+public class RateLimitGovernor {
+    private static final Logger log = Logger.getLogger(RateLimitGovernor.class);
+
+    public enum Priority {
+        HIGH, NORMAL, LOW
+    }
+
+    // Throttled is thrown for requests that exceed the budget of their priority.
+    public static class Throttled extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        Throttled(final String message) {
+            super(message);
+        }
+    }
+
+    // Request is a GitHub round-trip.
+    public interface Request<T> {
+        T send() throws IOException;
+    }
+
+    private static final class Context {
+        private final Priority priority;
+        // in System#nanoTime terms, 0 when the request can't wait
+        private final long deadline;
+        private final boolean exempt;
+
+        private Context(final Priority priority, final long deadline, final boolean exempt) {
+            this.priority = priority;
+            this.deadline = deadline;
+            this.exempt = exempt;
+        }
+    }
+
+    // GitHub rate limits renew every hour
+    private static final long WINDOW = TimeUnit.HOURS.toMillis(1);
+
+    private static final Context DEFAULT = new Context(Priority.NORMAL, 0, false);
+
+    private final ThreadLocal<Context> context = ThreadLocal.withInitial(() -> DEFAULT);
+
+    private final long reserve;
+    private final LongSupplier clock;
+
+    // -1 as long as GitHub didn't tell
+    private long limit = -1;
+    private long remaining = -1;
+    // in epoch milliseconds
+    private long reset;
+    private long pausedUntil;
+
+    private final AtomicLongArray throttled = new AtomicLongArray(Priority.values().length);
+    private final AtomicLongArray delayed = new AtomicLongArray(Priority.values().length);
+    private final AtomicLong stale = new AtomicLong();
+
+    public RateLimitGovernor(final long reserve) {
+        this(reserve, System::currentTimeMillis);
+    }
+
+    RateLimitGovernor(final long reserve, final LongSupplier clock) {
+        this.reserve = reserve;
+        this.clock = clock;
+    }
+
+    // call sends the requests made by the request with the priority. Requests may wait until the deadline, in
+    // System#nanoTime terms, for the budget to renew.
+    public <T> T call(final Priority priority, final long deadline, final Request<T> request) throws IOException {
+        return call(new Context(priority, deadline, false), request);
+    }
+
+    // call sends the requests made by the request with the priority, keeping the deadline of the caller.
+    public <T> T call(final Priority priority, final Request<T> request) throws IOException {
+        return call(priority, context.get().deadline, request);
+    }
+
+    // exempt sends the requests made by the request without taking them from the budget, or updating the budget from
+    // their responses.
+    public <T> T exempt(final Request<T> request) throws IOException {
+        final Context current = context.get();
+        return call(new Context(current.priority, current.deadline, true), request);
+    }
+
+    private <T> T call(final Context requestContext, final Request<T> request) throws IOException {
+        final Context previous = context.get();
+        context.set(requestContext);
+        try {
+            return request.send();
+        } finally {
+            context.set(previous);
+        }
+    }
+
+    // acquire takes one request from the budget for the priority of the current thread, waiting for the next window
+    // when the request can.
+    void acquire() throws IOException {
+        final Context current = context.get();
+        if (current.exempt) {
+            return;
+        }
+
+        final long until;
+        synchronized (this) {
+            final long now = clock.getAsLong();
+            if (limit >= 0 && now >= reset) {
+                // a new window started since the last response, the next response tells when it ends
+                remaining = limit;
+                reset = now + WINDOW;
+            }
+
+            if (now < pausedUntil) {
+                until = pausedUntil;
+            } else if (remaining < 0 || remaining > floor(current.priority)) {
+                if (remaining > 0) {
+                    remaining--;
+                }
+                return;
+            } else {
+                until = reset;
+            }
+        }
+
+        final long wait = until - clock.getAsLong();
+        if (current.deadline == 0 || System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait) > current.deadline) {
+            throttled.incrementAndGet(current.priority.ordinal());
+            throw new Throttled(String.format("GitHub rate limit budget of %s requests exhausted for %d ms", current.priority, wait));
+        }
+
+        delayed.incrementAndGet(current.priority.ordinal());
+        log.debug(String.format("delaying %s GitHub request for %d ms", current.priority, wait));
+        try {
+            sleep(wait);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Throttled("interrupted while waiting for the GitHub rate limit");
+        }
+        acquire();
+    }
+
+    void sleep(final long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private long floor(final Priority priority) {
+        switch (priority) {
+            case HIGH:
+                return 0;
+            case NORMAL:
+                return reserve / 2;
+            default:
+                return reserve;
+        }
+    }
+
+    // update takes the budget from the headers of the response. It returns whether the response rejected the request
+    // for exceeding a rate limit.
+    boolean update(final GitHubConnectorResponse response) {
+        final String resource = response.header("X-RateLimit-Resource");
+        final long responseLimit = number(response.header("X-RateLimit-Limit"));
+        final long responseRemaining = number(response.header("X-RateLimit-Remaining"));
+        final long responseReset = number(response.header("X-RateLimit-Reset"));
+        final long retryAfter = number(response.header("Retry-After"));
+
+        final boolean core = resource == null || "core".equals(resource);
+        final int status = response.statusCode();
+        final boolean rejected = (status == HttpURLConnection.HTTP_FORBIDDEN || status == 429)
+                && (responseRemaining == 0 || retryAfter >= 0);
+        if (context.get().exempt) {
+            return rejected;
+        }
+
+        synchronized (this) {
+            if (core && responseLimit >= 0 && responseRemaining >= 0 && responseReset >= 0) {
+                remaining = responseRemaining;
+                limit = responseLimit;
+                reset = TimeUnit.SECONDS.toMillis(responseReset);
+            }
+            if (rejected && retryAfter >= 0) {
+                // secondary rate limits pause all requests for a while
+                pausedUntil = Math.max(pausedUntil, clock.getAsLong() + TimeUnit.SECONDS.toMillis(retryAfter));
+            }
+        }
+
+        return rejected;
+    }
+
+    private static long number(final String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // servedStale counts a response served from the cache instead of GitHub for lack of budget.
+    void servedStale() {
+        stale.incrementAndGet();
+    }
+
+    public synchronized long limit() {
+        return limit;
+    }
+
+    public synchronized long remaining() {
+        return remaining;
+    }
+
+    public long throttled(final Priority priority) {
+        return throttled.get(priority.ordinal());
+    }
+
+    public long delayed(final Priority priority) {
+        return delayed.get(priority.ordinal());
+    }
+
+    public long stale() {
+        return stale.get();
+    }
+}
@@ -0,0 +1,45 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.metrics.CallbackMetric1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+// RateLimitMetrics exposes the GitHub rate limit budget and the requests the RateLimitGovernor held back.
+@Singleton
+public class RateLimitMetrics {
+    @Inject
+    RateLimitMetrics(final MetricMaker metrics, final RateLimitGovernor governor) {
+        metrics.newCallbackMetric("github/rate_limit/limit", Long.class,
+                new Description("Requests GitHub allows per rate limit window, -1 when unknown").setGauge().setUnit("requests"),
+                governor::limit);
+        metrics.newCallbackMetric("github/rate_limit/remaining", Long.class,
+                new Description("Requests left in the current GitHub rate limit window, -1 when unknown").setGauge().setUnit("requests"),
+                governor::remaining);
+        metrics.newCallbackMetric("github/rate_limit/stale_responses", Long.class,
+                new Description("Cached GitHub responses served without revalidation for lack of budget").setCumulative().setUnit("responses"),
+                governor::stale);
+
+        final CallbackMetric1<RateLimitGovernor.Priority, Long> throttled = metrics.newCallbackMetric("github/rate_limit/throttled", Long.class,
+                new Description("GitHub requests refused for lack of budget").setCumulative().setUnit("requests"),
+                priority());
+        final CallbackMetric1<RateLimitGovernor.Priority, Long> delayed = metrics.newCallbackMetric("github/rate_limit/delayed", Long.class,
+                new Description("GitHub requests that waited for the next rate limit window").setCumulative().setUnit("requests"),
+                priority());
+        metrics.newTrigger(ImmutableSet.of(throttled, delayed), () -> {
+            for (final RateLimitGovernor.Priority priority : RateLimitGovernor.Priority.values()) {
+                throttled.set(priority, governor.throttled(priority));
+                delayed.set(priority, governor.delayed(priority));
+            }
+        });
+    }
+
+    private static Field<RateLimitGovernor.Priority> priority() {
+        return Field.ofEnum(RateLimitGovernor.Priority.class, "priority", Field.ignoreMetadata())
+                .description("priority of the request")
+                .build();
+    }
+}
@@ -0,0 +1,33 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import java.io.IOException;
+
+// RateLimitedGitHubConnector sends requests to GitHub within the budget of a RateLimitGovernor and keeps the governor
+// up to date with the rate limit headers of the responses. Responses rejected for exceeding a rate limit fail with
+// RateLimitGovernor.Throttled instead of waiting for the limit to reset.
+public class RateLimitedGitHubConnector implements GitHubConnector {
+    private final GitHubConnector delegate;
+    private final RateLimitGovernor governor;
+
+    RateLimitedGitHubConnector(final GitHubConnector delegate, final RateLimitGovernor governor) {
+        this.delegate = delegate;
+        this.governor = governor;
+    }
+
+    @Override
+    public GitHubConnectorResponse send(final GitHubConnectorRequest request) throws IOException {
+        governor.acquire();
+
+        final GitHubConnectorResponse response = delegate.send(request);
+        if (governor.update(response)) {
+            response.close();
+            throw new RateLimitGovernor.Throttled(String.format("GitHub rate limit exceeded: %s", request.url()));
+        }
+
+        return response;
+    }
+}
@@ -0,0 +1,50 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import java.util.*;
+
+// RendezvousSelector implements highest random weight hashing: every candidate gets a score from the hash of the
+// change and the candidate, and the candidates with the highest scores are picked. Removing a candidate only moves
+// the changes it was picked for, and the load is spread evenly without virtual points.
+public class RendezvousSelector implements ReviewerSelector {
+    @Override
+    public String name() {
+        return "rendezvous";
+    }
+
+    @Override
+    public Pool pool(final Collection<String> candidates) {
+        final String[] names = new TreeSet<>(candidates).toArray(new String[0]);
+        final long[] hashes = new long[names.length];
+        for (int i = 0; i < names.length; i++) {
+            hashes[i] = HashRing.Md5Hasher.hash64(names[i]);
+        }
+
+        return (changeId, count) -> {
+            final Set<String> chosen = new LinkedHashSet<>();
+            if (count <= 0 || names.length == 0) {
+                return chosen;
+            }
+
+            final long key = HashRing.Md5Hasher.hash64(changeId);
+            final long[] scores = new long[names.length];
+            for (int i = 0; i < names.length; i++) {
+                scores[i] = ReviewerSelector.mix(key ^ hashes[i]);
+            }
+
+            // partial selection sort, count is small
+            final boolean[] taken = new boolean[names.length];
+            for (int picked = 0; picked < Math.min(count, names.length); picked++) {
+                int best = -1;
+                for (int i = 0; i < names.length; i++) {
+                    if (!taken[i] && (best < 0 || Long.compareUnsigned(scores[i], scores[best]) > 0)) {
+                        best = i;
+                    }
+                }
+                taken[best] = true;
+                chosen.add(names[best]);
+            }
+
+            return chosen;
+        };
+    }
+}
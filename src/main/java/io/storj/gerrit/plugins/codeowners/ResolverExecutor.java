@@ -0,0 +1,133 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// ResolverExecutor runs the network round-trips of resolving owners (GitHub teams, users and their emails)
+// concurrently. At most `resolverThreads` (default 8) lookups run at once: on virtual threads when the runtime has
+// them, on a gerrit work queue (listed by `gerrit show-queue`) otherwise.
+//
+// All lookups of one assignment share a deadline of `resolverTimeout` seconds (default 30), lookups still running
+// by then are cancelled and their owners skipped.
+@Singleton
+public class ResolverExecutor implements LifecycleListener {
+    private static final Logger log = Logger.getLogger(ResolverExecutor.class);
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final long timeoutNanos;
+
+    @Inject
+    ResolverExecutor(final PluginConfigFactory cfg, final WorkQueue workQueue) {
+        final PluginConfig config = cfg.getFromGerritConfig("codeowners");
+        final int threads = Math.max(1, config.getInt("resolverThreads", 8));
+
+        ExecutorService executor = newVirtualThreadExecutor();
+        if (executor == null) {
+            executor = workQueue.createQueue(threads, "CodeOwners-Resolver");
+        }
+
+        this.executor = executor;
+        this.permits = new Semaphore(threads);
+        this.timeoutNanos = TimeUnit.SECONDS.toNanos(config.getLong("resolverTimeout", 30));
+    }
+
+    ResolverExecutor(final ExecutorService executor, final int threads, final long timeoutNanos) {
+        this.executor = executor;
+        this.permits = new Semaphore(threads);
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    // the plugin is compiled for older runtimes, hence virtual threads are looked up reflectively
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // deadline returns the deadline for an assignment starting now, in System#nanoTime terms.
+    public long deadline() {
+        return System.nanoTime() + timeoutNanos;
+    }
+
+    // invokeAll runs the tasks and returns their results in the order of the tasks. Tasks that fail or don't finish
+    // before the deadline yield null.
+    public <T> List<T> invokeAll(final List<Callable<T>> tasks, final long deadline) {
+        final List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.isEmpty()) {
+            return results;
+        }
+
+        final List<Callable<T>> bounded = new ArrayList<>(tasks.size());
+        for (final Callable<T> task : tasks) {
+            bounded.add(() -> {
+                permits.acquire();
+                try {
+                    return task.call();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        final List<Future<T>> futures;
+        try {
+            futures = executor.invokeAll(bounded, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (int i = 0; i < tasks.size(); i++) {
+                results.add(null);
+            }
+            return results;
+        }
+
+        int timedOut = 0;
+        for (final Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (final CancellationException e) {
+                timedOut++;
+                results.add(null);
+            } catch (final ExecutionException e) {
+                log.warn("failed to resolve owner", e.getCause());
+                results.add(null);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(null);
+            }
+        }
+
+        if (timedOut > 0) {
+            log.warn(String.format("%d of %d owner lookups didn't finish in time", timedOut, tasks.size()));
+        }
+
+        return results;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
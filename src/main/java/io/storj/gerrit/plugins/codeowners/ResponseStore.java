@@ -0,0 +1,198 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+// ResponseStore keeps HTTP responses on disk, one file per request, and drops the least recently used ones once the
+// files take more than the configured number of bytes. Entries survive restarts of the plugin.
+final class ResponseStore {
+    private static final Logger log = Logger.getLogger(ResponseStore.class);
+
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".response";
+
+    // Entry is a cached response: its ETag, headers and decoded body.
+    static final class Entry {
+        final String etag;
+        final Map<String, List<String>> headers;
+        final byte[] body;
+
+        Entry(final String etag, final Map<String, List<String>> headers, final byte[] body) {
+            this.etag = etag;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        private long size() {
+            long size = body.length + etag.length();
+            for (final Map.Entry<String, List<String>> header : headers.entrySet()) {
+                size += header.getKey().length();
+                for (final String value : header.getValue()) {
+                    size += value.length();
+                }
+            }
+            return size;
+        }
+    }
+
+    private final Path dir;
+    private final long maxBytes;
+
+    // file name -> size of the file, least recently used first
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    ResponseStore(final Path dir, final long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+
+        Files.createDirectories(dir);
+
+        final List<Path> existing = new ArrayList<>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (final Path path : stream) {
+                existing.add(path);
+            }
+        }
+
+        final Map<Path, Long> modified = new HashMap<>();
+        for (final Path path : existing) {
+            modified.put(path, Files.getLastModifiedTime(path).toMillis());
+        }
+        existing.sort(Comparator.comparing(modified::get));
+
+        for (final Path path : existing) {
+            final long size = Files.size(path);
+            files.put(path.getFileName().toString(), size);
+            bytes += size;
+        }
+        evict();
+    }
+
+    // get returns the response stored for the key, or null when there is none.
+    Entry get(final String key) {
+        final String name = name(key);
+        synchronized (this) {
+            if (files.get(name) == null) {
+                return null;
+            }
+        }
+
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(dir.resolve(name))))) {
+            if (in.readInt() != VERSION || !in.readUTF().equals(key)) {
+                return null;
+            }
+
+            final String etag = in.readUTF();
+            final Map<String, List<String>> headers = new LinkedHashMap<>();
+            final int headerCount = in.readInt();
+            for (int i = 0; i < headerCount; i++) {
+                final String header = in.readUTF();
+                final int valueCount = in.readInt();
+                final List<String> values = new ArrayList<>(valueCount);
+                for (int j = 0; j < valueCount; j++) {
+                    values.add(in.readUTF());
+                }
+                headers.put(header, values);
+            }
+            final byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+
+            return new Entry(etag, headers, body);
+        } catch (final NoSuchFileException e) {
+            // evicted concurrently
+            return null;
+        } catch (final IOException e) {
+            log.warn("dropping unreadable cached response " + name, e);
+            remove(name);
+            return null;
+        }
+    }
+
+    // put stores the response for the key, unless it takes more than a tenth of the store.
+    void put(final String key, final Entry entry) {
+        if (entry.size() > maxBytes / 10) {
+            return;
+        }
+
+        final String name = name(key);
+        try {
+            final Path tmp = Files.createTempFile(dir, name, ".tmp");
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(VERSION);
+                out.writeUTF(key);
+                out.writeUTF(entry.etag);
+                out.writeInt(entry.headers.size());
+                for (final Map.Entry<String, List<String>> header : entry.headers.entrySet()) {
+                    out.writeUTF(header.getKey());
+                    out.writeInt(header.getValue().size());
+                    for (final String value : header.getValue()) {
+                        out.writeUTF(value);
+                    }
+                }
+                out.writeInt(entry.body.length);
+                out.write(entry.body);
+            }
+
+            final long size = Files.size(tmp);
+            Files.move(tmp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            synchronized (this) {
+                final Long previous = files.put(name, size);
+                bytes += size - (previous == null ? 0 : previous);
+                evict();
+            }
+        } catch (final IOException e) {
+            log.warn("failed to cache response for " + key, e);
+        }
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    private synchronized void remove(final String name) {
+        final Long size = files.remove(name);
+        if (size != null) {
+            bytes -= size;
+        }
+        delete(name);
+    }
+
+    private synchronized void evict() {
+        final Iterator<Map.Entry<String, Long>> eldest = files.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            final Map.Entry<String, Long> entry = eldest.next();
+            bytes -= entry.getValue();
+            eldest.remove();
+            delete(entry.getKey());
+        }
+    }
+
+    private void delete(final String name) {
+        try {
+            Files.deleteIfExists(dir.resolve(name));
+        } catch (final IOException e) {
+            log.warn("failed to delete cached response " + name, e);
+        }
+    }
+
+    private static String name(final String key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder name = new StringBuilder(digest.length * 2 + SUFFIX.length());
+            for (final byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.append(SUFFIX).toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
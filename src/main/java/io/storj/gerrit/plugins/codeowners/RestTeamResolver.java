@@ -0,0 +1,58 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.log4j.Logger;
+import org.kohsuke.github.GHFileNotFoundException;
+import org.kohsuke.github.GHOrganization;
+import org.kohsuke.github.GHTeam;
+import org.kohsuke.github.GHUser;
+import org.kohsuke.github.GitHub;
+
+import java.io.IOException;
+
+// RestTeamResolver lists the members of teams through the REST API. Members come without emails, those are looked up
+// per user when needed.
+@Singleton
+public class RestTeamResolver implements TeamResolver {
+    private static final Logger log = Logger.getLogger(RestTeamResolver.class);
+
+    private final GitHub github;
+
+    @Inject
+    public RestTeamResolver(final GitHub github) {
+        this.github = github;
+    }
+
+    @Override
+    public TeamCache.Team load(final String orgName, final String teamName) throws IOException {
+        // missing organizations and teams are answered with 404, which the client throws
+        final GHOrganization organization;
+        try {
+            organization = github.getOrganization(orgName);
+        } catch (final GHFileNotFoundException e) {
+            log.warn(String.format("Github organization couldn't be found: '%s'", orgName));
+            return TeamCache.Team.NONE;
+        }
+
+        final GHTeam team;
+        try {
+            team = organization.getTeamBySlug(teamName);
+        } catch (final GHFileNotFoundException e) {
+            log.warn(String.format("Github team couldn't be found: '%s/%s'", orgName, teamName));
+            return TeamCache.Team.NONE;
+        }
+        if (team.getPrivacy() == GHTeam.Privacy.SECRET) {
+            log.warn(String.format("Github team is secret: '%s/%s'", orgName, teamName));
+            return TeamCache.Team.NONE;
+        }
+
+        final ImmutableList.Builder<String> logins = ImmutableList.builder();
+        for (final GHUser member : team.getMembers()) {
+            logins.add(member.getLogin());
+        }
+        return new TeamCache.Team(ImmutableList.sortedCopyOf(logins.build()), ImmutableMap.of());
+    }
+}
@@ -5,16 +5,17 @@ import com.google.gerrit.extensions.api.GerritApi;
 import com.google.gerrit.extensions.api.changes.ReviewInput;
 import com.google.gerrit.extensions.api.changes.ReviewResult;
 import com.google.gerrit.extensions.api.changes.ReviewerInput;
-import com.google.gerrit.extensions.client.ListGroupsOption;
 import com.google.gerrit.extensions.client.ReviewerState;
 import com.google.gerrit.extensions.common.AccountInfo;
 import com.google.gerrit.extensions.common.ChangeInfo;
-import com.google.gerrit.extensions.common.GroupInfo;
 import com.google.gerrit.extensions.common.RevisionInfo;
 import com.google.gerrit.extensions.events.CommentAddedListener;
 import com.google.gerrit.extensions.events.RevisionCreatedListener;
 import com.google.gerrit.extensions.events.WorkInProgressStateChangedListener;
 import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
 import com.google.gerrit.server.config.PluginConfig;
 import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.git.GitRepositoryManager;
@@ -25,89 +26,107 @@ import org.apache.log4j.Logger;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.LogCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.kohsuke.github.GHOrganization;
-import org.kohsuke.github.GHTeam;
-import org.kohsuke.github.GHUser;
 import org.kohsuke.github.GitHub;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.function.Function;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 @Singleton
 public class ReviewAssigner implements WorkInProgressStateChangedListener, CommentAddedListener, RevisionCreatedListener {
     private static final Logger log = Logger.getLogger(ReviewAssigner.class);
 
+    // locations of the CODEOWNERS file, in order of precedence
+    private static final List<String> CODEOWNERS_PATHS = Arrays.asList("CODEOWNERS", ".github/CODEOWNERS", "docs/CODEOWNERS");
+
     private final GitHub github;
     private final GerritApi gerrit;
     private final GitRepositoryManager git;
+    private final ConfigCache configs;
+    private final ReviewerPoolCache pools;
 
     // use a global cache to reduce calls to the gerrit APIs
     // [user/email:]name -> gerritAccountId
-    private final ConcurrentMap<String, Integer> cache = new ConcurrentHashMap<>();
-    private final Function<String, Integer> loadAccountID;
-    private final String reviewerGroup;
+    private final AccountIdCache accounts;
+    private final AccountResolver resolver;
+    private final ReviewerGroup reviewerGroup;
+    private final ResolverExecutor resolvers;
+    private final TeamCache teams;
+    private final RateLimitGovernor governor;
+    private final AssignmentQueue queue;
+    private final long maxCodeOwnersSize;
+    private final Counter0 skippedWrites;
 
     @Inject
-    public ReviewAssigner(PluginConfigFactory cfg, final GitHub github, final GerritApi gerrit, final GitRepositoryManager git) {
+    public ReviewAssigner(PluginConfigFactory cfg, final GitHub github, final GerritApi gerrit, final GitRepositoryManager git, final ConfigCache configs, final ReviewerPoolCache pools, final AccountIdCache accounts, final AccountResolver resolver, final ReviewerGroup reviewerGroup, final ResolverExecutor resolvers, final TeamCache teams, final RateLimitGovernor governor, final AssignmentQueue queue, final MetricMaker metrics) {
         this.github = github;
         this.gerrit = gerrit;
         this.git = git;
+        this.configs = configs;
+        this.pools = pools;
+        this.accounts = accounts;
+        this.resolver = resolver;
+        this.reviewerGroup = reviewerGroup;
+        this.resolvers = resolvers;
+        this.teams = teams;
+        this.governor = governor;
+        this.queue = queue;
 
         PluginConfig config = cfg.getFromGerritConfig("codeowners");
-        reviewerGroup = config.getString("reviewerGroup", "");
+        // GitHub ignores CODEOWNERS files larger than 3 MB, so do we
+        maxCodeOwnersSize = config.getLong("maxCodeOwnersSize", 3 * 1024 * 1024);
 
-        this.loadAccountID = (String query) -> {
-            try {
-                final List<AccountInfo> accounts = this.gerrit.accounts().query(query).get();
-                if (accounts.size() == 0) {
-                    // did not find a suitable match
-                    return null;
-                }
-
-                AccountInfo account = accounts.get(0);
-                if(reviewerGroup == "") {
-                    // no filtering by the reviewer group.
-                    return account._accountId;
-                }
-
-                final List<GroupInfo> groups = this.gerrit.
-                        groups().
-                        query(reviewerGroup).
-                        withOptions(ListGroupsOption.MEMBERS, ListGroupsOption.INCLUDES).
-                        get();
-                if(groups.size() == 0) {
-                    return null;
-                }
-
-                for(GroupInfo group: groups) {
-                    if(group.members == null) continue;
-
-                    for (AccountInfo member : group.members) {
-                        if(member._accountId.equals(account._accountId)) {
-                            return account._accountId;
-                        }
-                    }
-                }
-
-                // user does not belong to any of the matching groups, hence we should not assign them
-                return null;
-            } catch (final RestApiException e) {
-                log.error("failed to query account", e);
+        skippedWrites = metrics.newCounter("assignment/skipped_writes",
+                new Description("Assignments that left the reviewers of the change as they were").setRate().setUnit("assignments"));
+    }
+
+    // loadAccountID returns the id of the account matching the query (`username:name` or `email:address`), or null
+    // when there is none.
+    private Integer loadAccountID(final String query) throws RestApiException, IOException {
+        return query.startsWith("username:")
+                ? resolver.byUsername(query.substring("username:".length()))
+                : resolver.byEmail(query.substring("email:".length()));
+    }
+
+    // loadAccountIDs resolves a batch of queries (`username:name` or `email:address`), see loadAccountID.
+    private Map<String, Integer> loadAccountIDs(final Collection<String> queries) throws RestApiException, IOException {
+        final Map<String, String> usernames = new LinkedHashMap<>();
+        final Map<String, String> emails = new LinkedHashMap<>();
+        for (final String query : queries) {
+            if (query.startsWith("username:")) {
+                usernames.put(query.substring("username:".length()), query);
+            } else {
+                emails.put(query.substring("email:".length()), query);
             }
+        }
 
-            return null;
-        };
+        final Map<String, Integer> ids = new HashMap<>();
+        if (!usernames.isEmpty()) {
+            resolver.byUsernames(usernames.keySet()).forEach((username, id) -> ids.put(usernames.get(username), id));
+        }
+        if (!emails.isEmpty()) {
+            resolver.byEmails(emails.keySet()).forEach((email, id) -> ids.put(emails.get(email), id));
+        }
+        return ids;
+    }
+
+    // reviewer returns the account if it may be assigned, accounts outside of the reviewer group are dropped.
+    private Integer reviewer(final Integer accountId) {
+        if (accountId == null || !reviewerGroup.isConfigured()) {
+            return accountId;
+        }
+
+        // user does not belong to any of the matching groups, hence we should not assign them
+        return reviewerGroup.contains(accountId) ? accountId : null;
     }
 
     private void unassign(final ChangeInfo change, final RevisionInfo revision) {
@@ -117,44 +136,48 @@ public class ReviewAssigner implements WorkInProgressStateChangedListener, Comme
     private Config loadCodeOwners(final Repository repo, final ChangeInfo change) {
         final String ref = "refs/heads/" + change.branch;
 
-        final Optional<byte[]> data = Optional.<byte[]>empty().or(() -> JgitWrapper.getBlobAsBytes(repo, ref, "CODEOWNERS"))
-                .or(() -> JgitWrapper.getBlobAsBytes(repo, ref, ".github/CODEOWNERS"))
-                .or(() -> JgitWrapper.getBlobAsBytes(repo, ref, "docs/CODEOWNERS"));
+        final Optional<JgitWrapper.Blob> blob = JgitWrapper.findFirstBlob(repo, ref, CODEOWNERS_PATHS);
 
         //noinspection OptionalIsPresent
-        if (!data.isPresent()) {
+        if (!blob.isPresent()) {
             return null;
         }
 
-        return Config.parse(new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data.get()))).lines());
+        final ObjectId id = blob.get().id;
+        return configs.get(id, () -> {
+            // stream the file into the parser, oversized files fail before anything is read
+            try (final Reader reader = new InputStreamReader(JgitWrapper.openBlob(repo, id, maxCodeOwnersSize), StandardCharsets.UTF_8)) {
+                return Config.open(reader, true);
+            }
+        });
     }
 
     public Set<Integer> fromCodeOwners(Config config, Set<String> changedFiles) throws IOException {
         Set<Integer> accounts = new HashSet<>();
 
-        final Set<String> owners = new HashSet<>();
-        for (final String path : changedFiles) {
-            owners.addAll(config.ownersFor(path));
-        }
+        final Set<String> owners = config.ownersForAll(changedFiles);
+
+        // GitHub users are matched by username and then by their GitHub email, plain emails directly
+        final Set<String> usernames = new TreeSet<>();
+        final List<String> emails = new ArrayList<>();
+        final List<String> teamNames = new ArrayList<>();
+        final List<Callable<TeamCache.Team>> teams = new ArrayList<>();
+
+        // GitHub round-trips run concurrently, sharing one deadline
+        final long deadline = resolvers.deadline();
 
         for (String owner : owners) {
             final int splitIndex = owner.indexOf('/');
 
-            //format of: @username
-            if (owner.startsWith("@")) {
-                Integer accountId = findByUsername(owner.substring(1));
-                if (accountId != null) {
-                    accounts.add(accountId);
-                }
+            //format of: email@domain.com
+            if (!owner.startsWith("@")) {
+                emails.add(owner);
                 continue;
             }
 
-            //format of: email@domain.com
+            //format of: @username
             if (splitIndex == -1) {
-                Integer accountId = findByEmail(owner);
-                if (accountId != null) {
-                    accounts.add(accountId);
-                }
+                usernames.add(owner.substring(1));
                 continue;
             }
 
@@ -162,83 +185,78 @@ public class ReviewAssigner implements WorkInProgressStateChangedListener, Comme
             // Format: @{org}/{team}
             final String orgName = owner.substring(1, splitIndex);
             final String teamName = owner.substring(splitIndex + 1);
+            teamNames.add(owner);
+            teams.add(() -> governor.call(RateLimitGovernor.Priority.NORMAL, deadline, () -> this.teams.team(orgName, teamName)));
+        }
 
-            final List<GHUser> members = new ArrayList<>();
-
-            GHOrganization organization = github.getOrganization(orgName);
-            if (organization != null) {
-                GHTeam team = organization.getTeamBySlug(teamName);
-                if (team == null) {
-                    log.warn(String.format("Github team couldn't be found: '%s/%s'", orgName, teamName));
-                } else if (team.getPrivacy() == GHTeam.Privacy.SECRET) {
-                    log.warn(String.format("Github team is secret: '%s/%s'", orgName, teamName));
-                } else {
-                    members.addAll(team.getMembers());
-                }
-            } else {
-                log.warn(String.format("Github organization couldn't be found: '%s'", orgName));
+        // emails that came with the members of teams, saving the fetch of those users below
+        final Map<String, String> teamEmails = new HashMap<>();
+        final List<TeamCache.Team> loaded = resolvers.invokeAll(teams, deadline);
+        for (int i = 0; i < loaded.size(); i++) {
+            final TeamCache.Team team = loaded.get(i);
+            if (team == null) {
+                // assigning from the other owners would move the change to other reviewers until the team loads
+                throw new IOException(String.format("couldn't load the members of %s", teamNames.get(i)));
             }
+            usernames.addAll(team.logins);
+            teamEmails.putAll(team.emails);
+        }
 
-            members.sort(Comparator.comparing(GHUser::getLogin));
+        // resolve all usernames in one go
+        final List<String> queries = new ArrayList<>();
+        for (final String username : usernames) {
+            queries.add("username:" + username);
+        }
+        this.accounts.prefetch(queries, this::loadAccountIDs);
 
-            for (final GHUser member : members) {
-                Integer accountId = findGithubMember(member);
-                if (accountId != null) {
-                    accounts.add(accountId);
-                    continue;
-                }
+        // then all emails, including the GitHub emails of users that didn't match by username
+        final List<Callable<String>> fallbacks = new ArrayList<>();
+        for (final String username : usernames) {
+            Integer accountId = findByUsername(username);
+            if (accountId != null) {
+                accounts.add(accountId);
+                continue;
             }
-        }
 
-        return accounts;
-    }
+            final String teamEmail = teamEmails.get(username);
+            if (teamEmail != null) {
+                emails.add(teamEmail);
+                continue;
+            }
 
-    // findGithubMember first tries to find a match for GitHub username and then email in gerrit database.
-    private Integer findGithubMember(GHUser member) {
-        // try to match the username directly
-        Integer accountId = cache.computeIfAbsent("username:" + member.getLogin(), loadAccountID);
-        if (accountId != null) {
-            return accountId;
+            // fetch the user to get the GitHub email, the first lookups to skip when the rate limit runs low
+            fallbacks.add(() -> governor.call(RateLimitGovernor.Priority.LOW, deadline, () -> github.getUser(username).getEmail()));
+        }
+        for (final String email : resolvers.invokeAll(fallbacks, deadline)) {
+            if (email != null) {
+                emails.add(email);
+            }
+        }
+
+        queries.clear();
+        for (final String email : emails) {
+            queries.add("email:" + email);
         }
+        this.accounts.prefetch(queries, this::loadAccountIDs);
 
-        // try to match the email
-        try {
-            accountId = this.findByEmail(member.getEmail());
+        for (final String email : emails) {
+            Integer accountId = findByEmail(email);
             if (accountId != null) {
-                return accountId;
+                accounts.add(accountId);
             }
-        } catch (Exception e) {
-            log.warn(e);
-            return null;
         }
 
         // TODO: translate users we couldn't match
 
-        return null;
+        return accounts;
     }
 
     private Integer findByUsername(String username) {
-        // try to match the username
-        Integer accountId = cache.computeIfAbsent("username:" + username, loadAccountID);
-        if (accountId != null) {
-            return accountId;
-        }
-
-        try {
-            // fetch the user to get the GitHub email
-            GHUser user = github.getUser(username);
-            // then try to match by user email
-            return this.findByEmail(user.getEmail());
-        } catch (Exception e) {
-            log.warn(e);
-            return null;
-        }
-
-        // TODO: translate users we couldn't match
+        return reviewer(accounts.get("username:" + username, this::loadAccountID));
     }
 
     private Integer findByEmail(String email) {
-        return cache.computeIfAbsent("email:" + email, loadAccountID);
+        return reviewer(accounts.get("email:" + email, this::loadAccountID));
     }
 
     private Set<Integer> fromGit(Integer ownerId, Set<Integer> accounts, Repository repo, Set<String> changedFiles, int requiredCount) throws GitAPIException {
@@ -264,6 +282,20 @@ public class ReviewAssigner implements WorkInProgressStateChangedListener, Comme
         return accounts;
     }
 
+    private static ReviewerSelector selectorFor(final Config config) {
+        if (config.reviewerSelector == null) {
+            return ReviewerSelector.DEFAULT;
+        }
+
+        final ReviewerSelector selector = ReviewerSelector.forName(config.reviewerSelector);
+        if (selector == null) {
+            log.warn(String.format("unknown reviewer selector '%s', using '%s'", config.reviewerSelector, ReviewerSelector.DEFAULT.name()));
+            return ReviewerSelector.DEFAULT;
+        }
+
+        return selector;
+    }
+
     private void assign(final ChangeInfo change, final RevisionInfo revision) throws IOException, GitAPIException, NoSuchAlgorithmException, RestApiException {
         try (final Repository repo = git.openRepository(Project.nameKey(change.project))) {
             Config config;
@@ -295,30 +327,59 @@ public class ReviewAssigner implements WorkInProgressStateChangedListener, Comme
                 reviewers = fromGit(change.owner._accountId, reviewers, repo, revision.files.keySet(), missingReviewers);
             }
 
-            // assign reviewers from the stable hash-ring
-            final int numberToAssign = Math.min(reviewers.size(), missingReviewers);
+            // assign reviewers from the stable hash-ring, none when the change has enough reviewers already
+            final int numberToAssign = Math.max(0, Math.min(reviewers.size(), missingReviewers));
             log.info(change.id);
             log.info(reviewers);
-            HashRing reviewersRing = HashRing.fromElements(HashRing.MD5, reviewers.stream().map(Object::toString).collect(Collectors.toList()));
-            Set<String> chosenReviewers = reviewersRing.getNodes(change.id, numberToAssign);
-            log.info(reviewersRing.size());
-            log.info(String.format("assigning %d (%s) reviewers to change %s choosing from %s", numberToAssign, chosenReviewers, change.id, reviewers));
-
-            // update the change
-            final ReviewInput request = new ReviewInput();
-
-            request.reviewers = chosenReviewers.stream().map((reviewer) -> {
-                final ReviewerInput r = new ReviewerInput();
-                r.reviewer = reviewer;
-                r.state = ReviewerState.REVIEWER;
-                return r;
-            }).collect(Collectors.toList());
-
-            ReviewResult result = gerrit.changes().id(change.id).current().review(request);
-            if (result.error != null && result.error != "") {
-                log.error(String.format("Error on setting reviewers for %s: %s", change.id, result.error));
+            final ReviewerSelector selector = selectorFor(config);
+            Set<String> chosenReviewers = pools.get(selector, reviewers).select(change.id, numberToAssign);
+            log.info(String.format("assigning %d (%s) reviewers to change %s choosing from %s with %s", numberToAssign, chosenReviewers, change.id, reviewers, selector.name()));
+
+            addReviewers(change, chosenReviewers);
+        }
+    }
+
+    // addReviewers adds the chosen reviewers that aren't reviewers of the change yet. Every review is a NoteDb commit
+    // and a reindex of the change, so nothing is written when there's nothing to add. CCs are still added, that moves
+    // them to the reviewers.
+    void addReviewers(final ChangeInfo change, final Set<String> chosenReviewers) throws RestApiException {
+        final Set<String> newReviewers = new LinkedHashSet<>(chosenReviewers);
+        if (change.reviewers != null && change.reviewers.get(ReviewerState.REVIEWER) != null) {
+            for (final AccountInfo reviewer : change.reviewers.get(ReviewerState.REVIEWER)) {
+                newReviewers.remove(String.valueOf(reviewer._accountId));
             }
         }
+        if (newReviewers.isEmpty()) {
+            log.info(String.format("reviewers of change %s are up to date", change.id));
+            skippedWrites.increment();
+            return;
+        }
+
+        // update the change
+        final ReviewInput request = new ReviewInput();
+
+        request.reviewers = newReviewers.stream().map((reviewer) -> {
+            final ReviewerInput r = new ReviewerInput();
+            r.reviewer = reviewer;
+            r.state = ReviewerState.REVIEWER;
+            return r;
+        }).collect(Collectors.toList());
+
+        ReviewResult result = gerrit.changes().id(change.id).current().review(request);
+        if (result.error != null && result.error != "") {
+            log.error(String.format("Error on setting reviewers for %s: %s", change.id, result.error));
+        }
+    }
+
+    // schedule queues the assignment of reviewers to the change, events are delivered while it waits for its turn.
+    private void schedule(final ChangeInfo change, final RevisionInfo revision, final AssignmentQueue.Priority priority) {
+        queue.submit(change.id, change.project, priority, () -> {
+            try {
+                assign(change, revision);
+            } catch (final IOException | GitAPIException | NoSuchAlgorithmException | RestApiException e) {
+                log.error("failed to update reviewers on " + change.id, e);
+            }
+        });
     }
 
     @Override
@@ -329,18 +390,14 @@ public class ReviewAssigner implements WorkInProgressStateChangedListener, Comme
         final boolean workInProgress = change.workInProgress != null && change.workInProgress;
         final boolean isPrivate = change.isPrivate != null && change.isPrivate;
 
-        try {
-            if (workInProgress || isPrivate) {
-                // if a review is toggled from active => work in progress / private, remove auto-assigned reviewers.
-                log.info("removing reviewers from " + change.id);
-                unassign(change, revision);
-            } else {
-                // if a review is toggled from work in progress / private => active, add auto-assigned reviewers.
-                log.info("assigning reviewers to " + change.id);
-                assign(change, revision);
-            }
-        } catch (final IOException | GitAPIException | NoSuchAlgorithmException | RestApiException e) {
-            log.error("failed to update reviewers on " + change.id, e);
+        if (workInProgress || isPrivate) {
+            // if a review is toggled from active => work in progress / private, remove auto-assigned reviewers.
+            log.info("removing reviewers from " + change.id);
+            unassign(change, revision);
+        } else {
+            // if a review is toggled from work in progress / private => active, add auto-assigned reviewers.
+            log.info("assigning reviewers to " + change.id);
+            schedule(change, revision, AssignmentQueue.Priority.INTERACTIVE);
         }
     }
 
@@ -348,36 +405,28 @@ public class ReviewAssigner implements WorkInProgressStateChangedListener, Comme
     @Override
     public void onCommentAdded(CommentAddedListener.Event event) {
         if (event.getComment() != null && event.getComment().contains("autoassign")) {
-            try {
-                // if a review is toggled from work in progress / private => active, add auto-assigned reviewers.
-                log.info("assigning reviewers to " + event.getChange().id);
-                assign(event.getChange(), event.getRevision());
-            } catch (final IOException | GitAPIException | NoSuchAlgorithmException | RestApiException e) {
-                log.error("failed to update reviewers on " + event.getChange().id, e);
-            }
+            // someone asked for reviewers and waits for them
+            log.info("assigning reviewers to " + event.getChange().id);
+            schedule(event.getChange(), event.getRevision(), AssignmentQueue.Priority.INTERACTIVE);
         }
     }
 
     @Override
     public void onRevisionCreated(RevisionCreatedListener.Event event) {
-        try {
-            // this is empty during the rebase.
-            if (event.getChange() == null) {
-                return;
-            }
-            if (event.getChange() != null && event.getChange().isPrivate != null && event.getChange().isPrivate) {
-                return;
-            }
-            if (event.getChange() != null && event.getChange().workInProgress != null && event.getChange().workInProgress) {
-                return;
-            }
-
-            // if a review is toggled from work in progress / private => active, add auto-assigned reviewers.
-            log.info("assigning reviewers to " + event.getChange().id);
-            assign(event.getChange(), event.getRevision());
-        } catch (final IOException | GitAPIException | NoSuchAlgorithmException | RestApiException e) {
-            log.error("failed to update reviewers on " + event.getChange().id, e);
+        // this is empty during the rebase.
+        if (event.getChange() == null) {
+            return;
+        }
+        if (event.getChange() != null && event.getChange().isPrivate != null && event.getChange().isPrivate) {
+            return;
         }
+        if (event.getChange() != null && event.getChange().workInProgress != null && event.getChange().workInProgress) {
+            return;
+        }
+
+        // if a review is toggled from work in progress / private => active, add auto-assigned reviewers.
+        log.info("assigning reviewers to " + event.getChange().id);
+        schedule(event.getChange(), event.getRevision(), AssignmentQueue.Priority.BACKGROUND);
     }
 
 }
@@ -0,0 +1,136 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.client.ListGroupsOption;
+import com.google.gerrit.extensions.common.AccountInfo;
+import com.google.gerrit.extensions.common.GroupInfo;
+import com.google.gerrit.extensions.events.GroupIndexedListener;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.extensions.restapi.Url;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.log4j.Logger;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// ReviewerGroup keeps the account ids of the members of the groups matching the `reviewerGroup` query, so checking
+// whether an account may be assigned doesn't cost a group query.
+//
+// Members are loaded on first use and reloaded once they are older than `reviewerGroupRefresh` (default 10 minutes)
+// or when one of the matching groups is reindexed, which gerrit does on every membership change. While a reload is
+// in progress other threads keep using the previous members, when it fails as well. Until the first load succeeds
+// every check queries the groups again.
+@Singleton
+public class ReviewerGroup implements GroupIndexedListener {
+    private static final Logger log = Logger.getLogger(ReviewerGroup.class);
+
+    private static final class Members {
+        private final IntSet accounts;
+        // uuids of the matching groups
+        private final Set<String> groups;
+        private final long loaded;
+
+        private Members(final IntSet accounts, final Set<String> groups, final long loaded) {
+            this.accounts = accounts;
+            this.groups = groups;
+            this.loaded = loaded;
+        }
+    }
+
+    private final GerritApi gerrit;
+    private final String query;
+    private final long refreshNanos;
+
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private volatile Members members;
+    private volatile boolean stale;
+
+    @Inject
+    public ReviewerGroup(final PluginConfigFactory cfg, final GerritApi gerrit) {
+        this.gerrit = gerrit;
+
+        final PluginConfig config = cfg.getFromGerritConfig("codeowners");
+        this.query = config.getString("reviewerGroup", "");
+        this.refreshNanos = TimeUnit.SECONDS.toNanos(config.getLong("reviewerGroupRefresh", TimeUnit.MINUTES.toSeconds(10)));
+    }
+
+    // isConfigured tells whether assignment is restricted to a reviewer group at all.
+    public boolean isConfigured() {
+        return !query.isEmpty();
+    }
+
+    // contains tells whether the account is a member of one of the reviewer groups.
+    public boolean contains(final int accountId) {
+        Members current = members;
+        if (current == null) {
+            synchronized (this) {
+                current = members;
+                if (current == null) {
+                    current = load();
+                }
+            }
+        } else if ((stale || System.nanoTime() - current.loaded > refreshNanos) && loading.compareAndSet(false, true)) {
+            try {
+                current = load();
+            } finally {
+                loading.set(false);
+            }
+        }
+
+        return current.accounts.contains(accountId);
+    }
+
+    @Override
+    public void onGroupIndexed(final String uuid) {
+        final Members current = members;
+        // no group matched so far, the indexed one might be the first
+        if (current != null && (current.groups.isEmpty() || current.groups.contains(uuid))) {
+            stale = true;
+        }
+    }
+
+    private Members load() {
+        stale = false;
+
+        final IntSet accounts = new IntSet();
+        final Set<String> groups = new HashSet<>();
+        try {
+            final List<GroupInfo> infos = gerrit.
+                    groups().
+                    query(query).
+                    withOptions(ListGroupsOption.MEMBERS, ListGroupsOption.INCLUDES).
+                    get();
+
+            for (final GroupInfo group : infos) {
+                if (group.id != null) {
+                    groups.add(Url.decode(group.id));
+                }
+                if (group.members == null) continue;
+
+                for (final AccountInfo member : group.members) {
+                    accounts.add(member._accountId);
+                }
+            }
+        } catch (final RestApiException e) {
+            log.error("failed to query reviewer group " + query, e);
+            if (members == null) {
+                // nobody is known to be a member, but don't cache that, the next check tries again
+                return new Members(accounts, groups, System.nanoTime());
+            }
+
+            // keep the members we know of, try again on the next refresh
+            final Members previous = members;
+            members = new Members(previous.accounts, previous.groups, System.nanoTime());
+            return members;
+        }
+
+        members = new Members(accounts, groups, System.nanoTime());
+        return members;
+    }
+}
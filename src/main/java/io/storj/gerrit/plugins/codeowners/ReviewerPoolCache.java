@@ -0,0 +1,101 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.Weigher;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+
+// ReviewerPoolCache keeps prepared reviewer pools (hash rings, lookup tables, ...) keyed by the strategy and the set of
+// candidate account ids, since the same team yields the same candidates for many changes a day.
+//
+// The cache is registered with gerrit, its size can be tuned with `cache.codeowners.reviewer_pools.memoryLimit`
+// (candidates and lookup table slots of all pools, see ReviewerSelector#weight) and its statistics show up in
+// `gerrit show-caches`.
+@Singleton
+public class ReviewerPoolCache {
+    static final String CACHE_NAME = "reviewer_pools";
+
+    public static CacheModule module() {
+        return new CacheModule() {
+            @Override
+            protected void configure() {
+                cache(CACHE_NAME, Key.class, ReviewerSelector.Pool.class)
+                        .maximumWeight(100_000)
+                        .weigher(PoolWeigher.class);
+            }
+        };
+    }
+
+    // Key identifies a pool by strategy and sorted account ids, with the fingerprint of both precomputed.
+    public static final class Key {
+        private final String selector;
+        private final int[] reviewers;
+        private final int fingerprint;
+
+        Key(final String selector, final Collection<Integer> reviewers) {
+            this.selector = selector;
+            this.reviewers = new int[reviewers.size()];
+            int i = 0;
+            for (final int reviewer : reviewers) {
+                this.reviewers[i++] = reviewer;
+            }
+            Arrays.sort(this.reviewers);
+            this.fingerprint = 31 * selector.hashCode() + Arrays.hashCode(this.reviewers);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return fingerprint == key.fingerprint && selector.equals(key.selector) && Arrays.equals(reviewers, key.reviewers);
+        }
+
+        @Override
+        public int hashCode() {
+            return fingerprint;
+        }
+    }
+
+    // PoolWeigher weighs a pool by its size, a maglev pool holds a lookup table many times the number of candidates.
+    public static class PoolWeigher implements Weigher<Key, ReviewerSelector.Pool> {
+        @Override
+        public int weigh(final Key key, final ReviewerSelector.Pool pool) {
+            final ReviewerSelector selector = ReviewerSelector.forName(key.selector);
+            return 1 + (selector == null ? key.reviewers.length : selector.weight(key.reviewers.length));
+        }
+    }
+
+    private final Cache<Key, ReviewerSelector.Pool> cache;
+
+    @Inject
+    ReviewerPoolCache(@Named(CACHE_NAME) final Cache<Key, ReviewerSelector.Pool> cache) {
+        this.cache = cache;
+    }
+
+    // get returns the pool of the reviewers for the strategy, preparing it only when it isn't cached yet.
+    public ReviewerSelector.Pool get(final ReviewerSelector selector, final Collection<Integer> reviewers) {
+        final Key key = new Key(selector.name(), reviewers);
+        try {
+            return cache.get(key, () -> {
+                final String[] candidates = new String[key.reviewers.length];
+                for (int i = 0; i < candidates.length; i++) {
+                    candidates[i] = Integer.toString(key.reviewers[i]);
+                }
+                return selector.pool(Arrays.asList(candidates));
+            });
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException("failed to prepare reviewer pool", e.getCause());
+        }
+    }
+}
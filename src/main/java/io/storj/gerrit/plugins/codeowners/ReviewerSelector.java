@@ -0,0 +1,53 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import java.util.Collection;
+import java.util.Set;
+
+// ReviewerSelector is a strategy to pick reviewers for a change among its candidates. Every strategy is deterministic:
+// the same change and candidates always give the same reviewers. `hash-ring`, `rendezvous` and `maglev` are also
+// stable, a change keeps most of its reviewers when the candidates change slightly. `jump` is only stable when
+// candidates are added or removed at the end of their sorted order, any other change moves many changes.
+//
+// A CODEOWNERS file can choose a strategy with `#gerrit-codeowners.reviewer-selector: <name>`.
+public interface ReviewerSelector {
+
+    // Pool is a set of candidates prepared for picking reviewers.
+    interface Pool {
+        // select returns up to count distinct reviewers for the change, none when count isn't positive.
+        Set<String> select(String changeId, int count);
+    }
+
+    String name();
+
+    // pool prepares the candidates for lookups, the result does not depend on the order of the candidates.
+    Pool pool(Collection<String> candidates);
+
+    // weight approximates the size of a pool of the candidates, in candidates and lookup table slots.
+    default int weight(final int candidates) {
+        return candidates;
+    }
+
+    ReviewerSelector HASH_RING = new HashRingSelector();
+    ReviewerSelector RENDEZVOUS = new RendezvousSelector();
+    ReviewerSelector JUMP = new JumpSelector();
+    ReviewerSelector MAGLEV = new MaglevSelector();
+
+    ReviewerSelector DEFAULT = HASH_RING;
+
+    // forName returns the strategy with the name, or null when there is none.
+    static ReviewerSelector forName(final String name) {
+        for (final ReviewerSelector selector : new ReviewerSelector[]{HASH_RING, RENDEZVOUS, JUMP, MAGLEV}) {
+            if (selector.name().equals(name)) {
+                return selector;
+            }
+        }
+        return null;
+    }
+
+    // mix scrambles the bits of a 64-bit value (the splitmix64 finalizer), used to derive independent hashes.
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
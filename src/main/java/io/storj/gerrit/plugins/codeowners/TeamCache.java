@@ -0,0 +1,93 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+
+// TeamCache keeps the logins of the members of GitHub teams, keyed by `org/team`. Teams that can't be found or are
+// secret are kept too, as teams without members, so they aren't looked up on every event either.
+//
+// Entries are refreshed in the background once they are older than `cache.codeowners.teams.refreshAfterWrite`
+// (default 10 minutes), assignments keep using the current members meanwhile and only block on teams seen for the
+// first time or not used for `cache.codeowners.teams.maxAge` (default 1 hour). A failed refresh keeps the current
+// members.
+@Singleton
+public class TeamCache {
+    private static final Logger log = Logger.getLogger(TeamCache.class);
+
+    static final String CACHE_NAME = "teams";
+
+    public static CacheModule module() {
+        return new CacheModule() {
+            @Override
+            protected void configure() {
+                cache(CACHE_NAME, String.class, Team.class)
+                        .maximumWeight(1_000)
+                        .expireAfterWrite(Duration.ofHours(1))
+                        .refreshAfterWrite(Duration.ofMinutes(10))
+                        .loader(Loader.class);
+            }
+        };
+    }
+
+    // Team holds the logins of the members of a team, sorted, and the emails of the members that were returned along
+    // with them (only by the GraphQL resolver).
+    public static final class Team {
+        static final Team NONE = new Team(ImmutableList.of(), ImmutableMap.of());
+
+        final ImmutableList<String> logins;
+        final ImmutableMap<String, String> emails;
+
+        Team(final ImmutableList<String> logins, final ImmutableMap<String, String> emails) {
+            this.logins = logins;
+            this.emails = emails;
+        }
+    }
+
+    static class Loader extends CacheLoader<String, Team> {
+        private final TeamResolver resolver;
+        private final RateLimitGovernor governor;
+
+        @Inject
+        Loader(final TeamResolver resolver, final RateLimitGovernor governor) {
+            this.resolver = resolver;
+            this.governor = governor;
+        }
+
+        @Override
+        public Team load(final String key) throws IOException {
+            final int splitIndex = key.indexOf('/');
+            // teams are shared by many changes, they go first when the rate limit runs low
+            return governor.call(RateLimitGovernor.Priority.HIGH,
+                    () -> resolver.load(key.substring(0, splitIndex), key.substring(splitIndex + 1)));
+        }
+    }
+
+    private final LoadingCache<String, Team> cache;
+
+    @Inject
+    TeamCache(@Named(CACHE_NAME) final LoadingCache<String, Team> cache) {
+        this.cache = cache;
+    }
+
+    // team returns the members of the team, or null when it can't be loaded.
+    public Team team(final String orgName, final String teamName) {
+        try {
+            return cache.get(orgName + "/" + teamName);
+        } catch (final ExecutionException | UncheckedExecutionException e) {
+            log.error(String.format("failed to load Github team '%s/%s'", orgName, teamName), e.getCause());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import java.io.IOException;
+
+// TeamResolver loads the members of GitHub teams. The implementation is picked with the `teamResolver` plugin
+// option: `rest` (default) lists members through the REST API, `graphql` fetches members together with their emails
+// through the GraphQL API.
+public interface TeamResolver {
+    String REST = "rest";
+    String GRAPHQL = "graphql";
+
+    // load returns the members of the team, or TeamCache.Team#NONE when the team can't be found or is secret.
+    TeamCache.Team load(String orgName, String teamName) throws IOException;
+}
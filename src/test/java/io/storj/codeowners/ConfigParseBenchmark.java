@@ -0,0 +1,138 @@
+package io.storj.codeowners;
+
+import com.google.common.base.Splitter;
+import org.eclipse.jgit.ignore.FastIgnoreRule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares {@link Config#parse(Stream)} with the previous Splitter and regex based implementation on a synthetic
+ * 50k line CODEOWNERS file. Scores are per line, run with the gc profiler to see bytes allocated per line
+ * (<code>gc.alloc.rate.norm</code>).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(ConfigParseBenchmark.LINES)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigParseBenchmark {
+    static final int LINES = 50_000;
+
+    private List<String> lines;
+
+    @Setup
+    public void setup() {
+        lines = lines(LINES);
+    }
+
+    @Benchmark
+    public Config lexer() {
+        return Config.parse(lines.stream());
+    }
+
+    @Benchmark
+    public Config legacy() {
+        return legacyParse(lines.stream());
+    }
+
+    static List<String> lines(final int count) {
+        final Random random = new Random(42);
+        final String[] dirs = {"apps", "docs", "internal", "lib", "build", "scripts", "satellite", "storagenode"};
+        final String[] owners = {"@global-owner1", "@octocat", "@octo-org/octocats", "docs@example.com", "@js-owner"};
+
+        final List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            switch (i % 10) {
+                case 0:
+                    lines.add("# owners of module " + i);
+                    break;
+                case 1:
+                    lines.add("");
+                    break;
+                case 2:
+                    lines.add("*.ext" + i + " " + owners[random.nextInt(owners.length)]);
+                    break;
+                case 3:
+                    lines.add("# gerrit-codeowners.reviewer-count: " + (1 + random.nextInt(3)));
+                    break;
+                default:
+                    lines.add("/" + dirs[random.nextInt(dirs.length)] + "/module" + i + "/   "
+                            + owners[random.nextInt(owners.length)] + " " + owners[random.nextInt(owners.length)]
+                            + " # maintained by team " + i);
+            }
+        }
+
+        return lines;
+    }
+
+    private static final Splitter SPLITTER = Splitter.on(' ');
+
+    // legacyParse is Config.parse as it was before the hand-written lexer.
+    static Config legacyParse(final Stream<String> stream) {
+        final List<Config.Rule> rules = new ArrayList<>();
+        AtomicInteger assigneeNo = new AtomicInteger(2);
+        AtomicBoolean useGitHistory = new AtomicBoolean(false);
+        stream
+                .filter(Objects::nonNull)
+                .forEach((line) -> {
+                    final int commentStart = line.lastIndexOf("#");
+                    if (commentStart == 0 || (commentStart > 0 && line.charAt(commentStart - 1) != '\\')) {
+                        String comment = line.substring(commentStart);
+                        Matcher matcher = Config.REVIEWER_COUNT_PATTERN.matcher(comment);
+                        if (matcher.find()) {
+                            assigneeNo.set(Integer.parseInt(matcher.group(1)));
+                        }
+                        Matcher randomizeMatcher = Config.USE_GIT_HISTORY.matcher(comment);
+                        if (randomizeMatcher.find()) {
+                            useGitHistory.set(true);
+                        }
+
+                        line = line.substring(0, commentStart);
+                    }
+
+                    if ("".equals(line)) {
+                        return;
+                    }
+
+                    final List<String> parts = SPLITTER
+                            .splitToStream(line)
+                            .filter(Objects::nonNull)
+                            .filter((part) -> part.length() > 0)
+                            .map((part) -> {
+                                if (part.charAt(part.length() - 1) == '\\') {
+                                    part = part + " ";
+                                }
+
+                                return part;
+                            })
+                            .collect(Collectors.toList());
+
+                    rules.add(new Config.Rule(
+                            new FastIgnoreRule(parts.get(0)),
+                            parts.subList(1, parts.size())
+                    ));
+                });
+
+        return new Config(rules, assigneeNo.get(), useGitHistory.get());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ConfigParseBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
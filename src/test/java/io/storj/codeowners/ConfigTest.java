@@ -10,6 +10,11 @@ import java.io.StringReader;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
 import java.util.regex.Matcher;
 
 import static org.junit.Assert.assertEquals;
@@ -47,7 +52,8 @@ public class ConfigTest {
 
             Assert.assertEquals(1, config.rules.size());
             Config.Rule rule = config.rules.get(0);
-            Assert.assertEquals(2, rule.owners.size());
+            Assert.assertEquals(2, rule.ownerCount());
+            Assert.assertEquals(Sets.newHashSet("@kossuth", "@lajos"), rule.owners());
         }
     }
 
@@ -85,4 +91,154 @@ public class ConfigTest {
 
         assertEquals(Sets.newHashSet("@storj/example"), config.ownersFor("/README.md"));
     }
+
+    @Test
+    public void compiledMatchesScan() throws URISyntaxException, IOException {
+        final Config scan = Config.parse(Files.lines(
+                Paths.get(ClassLoader.getSystemResource("TEST_CODEOWNERS").toURI())
+        ));
+        final Config compiled = Config.parse(Files.lines(
+                Paths.get(ClassLoader.getSystemResource("TEST_CODEOWNERS").toURI())
+        ), true);
+
+        assertTrue(compiled.isCompiled());
+        for (final String path : new String[]{
+                "/apps/github", "apps/github/x.js", "/apps/main.js", "/apps/main.go", "/scripts/deploy.sh",
+                "/docs/README.md", "/internal/apps/main.js", "/internal/docs/README.md", "/build/logs/out.json",
+                "x/build/logs/out.json", "/internal/lib/lib.txt", "internal/lib/lib.go", "Jenkinsfile", "a/Jenkinsfile"}) {
+            assertEquals(path, scan.ownersFor(path), compiled.ownersFor(path));
+        }
+    }
+
+    @Test
+    public void compiledMatchesScanRandomized() {
+        final String[] names = {"a", "b", "docs", "src", "lib", "main.go", "x.js", "README.md", "out.tar.gz", ".js"};
+        final String[] templates = {
+                "%s", "%s/", "/%s", "/%s/", "%s/%s", "/%s/%s/", "%s/*", "/%s/*.go", "**/%s", "%s/**",
+                "%s/**/%s", "*.go", "*.js", "*.gz", "*", "*/%s", "%s*", "?%s", "[ab]/%s", "!%s", "%s\\ x"
+        };
+
+        final Random random = new Random(42);
+        final List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            final String template = templates[random.nextInt(templates.length)];
+            final String pattern = String.format(template,
+                    names[random.nextInt(names.length)], names[random.nextInt(names.length)]);
+            lines.add(pattern + " @owner" + i);
+        }
+
+        final Config scan = Config.parse(lines.stream());
+        final Config compiled = Config.parse(lines.stream(), true);
+
+        for (int i = 0; i < 2000; i++) {
+            final StringBuilder path = new StringBuilder();
+            if (random.nextBoolean()) {
+                path.append('/');
+            }
+            final int depth = 1 + random.nextInt(5);
+            for (int d = 0; d < depth; d++) {
+                if (d > 0) {
+                    path.append('/');
+                }
+                path.append(names[random.nextInt(names.length)]);
+            }
+
+            assertEquals(path.toString(), scan.ownersFor(path.toString()), compiled.ownersFor(path.toString()));
+        }
+    }
+
+    @Test
+    public void lexerMatchesLegacyParser() {
+        final List<String> lines = ConfigParseBenchmark.lines(1000);
+        lines.add("docs/\\#wiki @escaped-hash # trailing comment");
+        lines.add("my\\ file.txt @escaped-space");
+        lines.add("#gerrit-codeowners.reviewer-count:55");
+        lines.add("#  gerrit-codeowners_reviewer-count: 7 and more");
+        lines.add("# gerrit-codeowners.use-git-history: true");
+        lines.add("#gerrit-codeownersxxx: 5");
+
+        final Config lexed = Config.parse(lines.stream());
+        final Config legacy = ConfigParseBenchmark.legacyParse(lines.stream());
+
+        assertEquals(7, lexed.reviewerCount);
+        assertTrue(lexed.useGitHistory);
+        assertEquals(legacy.reviewerCount, lexed.reviewerCount);
+        assertEquals(legacy.useGitHistory, lexed.useGitHistory);
+        assertEquals(legacy.rules.size(), lexed.rules.size());
+        for (int i = 0; i < legacy.rules.size(); i++) {
+            assertEquals(legacy.rules.get(i).toString(), lexed.rules.get(i).toString());
+        }
+    }
+
+    @Test
+    public void blankLines() throws IOException {
+        try (Reader reader = new StringReader("   \n  # comment only\n* @elek\n")) {
+            Config config = Config.open(reader);
+
+            assertEquals(1, config.rules.size());
+            assertEquals(Sets.newHashSet("@elek"), config.ownersFor("README.md"));
+        }
+    }
+
+    @Test
+    public void matcherUnion() throws URISyntaxException, IOException {
+        final Config config = Config.parse(Files.lines(
+                Paths.get(ClassLoader.getSystemResource("TEST_CODEOWNERS").toURI())
+        ), true);
+
+        final Config.Matcher matcher = config.matcher();
+        matcher.match("/apps/main.js");
+        matcher.match("/docs/README.md");
+
+        final Set<String> expected = new HashSet<>(config.ownersFor("/apps/main.js"));
+        expected.addAll(config.ownersFor("/docs/README.md"));
+        assertEquals(expected, matcher.owners());
+        assertEquals(expected.size(), matcher.ownerIds().cardinality());
+
+        matcher.clear();
+        assertEquals(new HashSet<>(), matcher.owners());
+    }
+
+    @Test
+    public void ownersForAllMatchesUnion() {
+        final String[] names = {"a", "b", "docs", "src", "lib", "main.go", "x.js", "README.md"};
+        final String[] templates = {
+                "%s", "%s/", "/%s", "/%s/", "%s/%s", "/%s/%s/", "%s/*", "/%s/*.go", "**/%s", "%s/**",
+                "%s/**/%s", "*.go", "*.js", "*/%s", "%s*", "[ab]/%s", "%s/*/"
+        };
+
+        final Random random = new Random(7);
+        for (int round = 0; round < 50; round++) {
+            final List<String> lines = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                final String pattern = String.format(templates[random.nextInt(templates.length)],
+                        names[random.nextInt(names.length)], names[random.nextInt(names.length)]);
+                lines.add(pattern + " @owner" + random.nextInt(20) + " @owner" + random.nextInt(20));
+            }
+
+            final List<String> paths = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                final StringBuilder path = new StringBuilder(random.nextBoolean() ? "/" : "");
+                final int depth = 1 + random.nextInt(4);
+                for (int d = 0; d < depth; d++) {
+                    if (d > 0) {
+                        path.append('/');
+                    }
+                    path.append(names[random.nextInt(names.length)]);
+                }
+                paths.add(path.toString());
+            }
+
+            for (final boolean compile : new boolean[]{false, true}) {
+                final Config config = Config.parse(lines.stream(), compile);
+
+                final Set<String> expected = new HashSet<>();
+                for (final String path : paths) {
+                    expected.addAll(config.ownersFor(path));
+                }
+
+                assertEquals(lines + " " + paths, expected, config.ownersForAll(paths));
+            }
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AccountIdCacheTest {
+    @Test
+    public void cachesMatches() {
+        Cache<String, Integer> found = CacheBuilder.newBuilder().recordStats().build();
+        AccountIdCache accounts = new AccountIdCache(found, CacheBuilder.newBuilder().build());
+
+        AtomicInteger loads = new AtomicInteger();
+        AccountIdCache.Loader load = (query) -> {
+            loads.incrementAndGet();
+            return 1000001;
+        };
+
+        Assert.assertEquals(Integer.valueOf(1000001), accounts.get("username:elek", load));
+        Assert.assertEquals(Integer.valueOf(1000001), accounts.get("username:elek", load));
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1, found.stats().hitCount());
+    }
+
+    @Test
+    public void cachesMissing() {
+        Cache<String, Boolean> missing = CacheBuilder.newBuilder().build();
+        AccountIdCache accounts = new AccountIdCache(CacheBuilder.newBuilder().build(), missing);
+
+        AtomicInteger loads = new AtomicInteger();
+        AccountIdCache.Loader load = (query) -> {
+            loads.incrementAndGet();
+            return null;
+        };
+
+        Assert.assertNull(accounts.get("email:nobody@storj.io", load));
+        Assert.assertNull(accounts.get("email:nobody@storj.io", load));
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(Boolean.TRUE, missing.getIfPresent("email:nobody@storj.io"));
+    }
+
+    @Test
+    public void failedLoad() {
+        AccountIdCache accounts = new AccountIdCache(CacheBuilder.newBuilder().build(), CacheBuilder.newBuilder().build());
+
+        Assert.assertNull(accounts.get("username:bela", (query) -> {
+            throw new IOException("unavailable");
+        }));
+        Assert.assertEquals(Integer.valueOf(2), accounts.get("username:bela", (query) -> 2));
+    }
+}
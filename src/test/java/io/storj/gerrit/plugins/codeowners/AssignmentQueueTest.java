@@ -0,0 +1,295 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.util.ManualRequestContext;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.gerrit.server.util.RequestContext;
+import com.google.gerrit.server.util.ThreadLocalRequestContext;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AssignmentQueueTest {
+    private final List<String> ran = new CopyOnWriteArrayList<>();
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final ThreadLocalRequestContext requestContext = Mockito.mock(ThreadLocalRequestContext.class, Mockito.CALLS_REAL_METHODS);
+    private final OneOffRequestContext oneOffRequestContext = Mockito.mock(OneOffRequestContext.class);
+    private final CurrentUser internalUser = user(null);
+
+    {
+        Mockito.when(oneOffRequestContext.open()).thenAnswer((invocation) -> new ManualRequestContext(internalUser, requestContext));
+        Mockito.when(oneOffRequestContext.openAs(ArgumentMatchers.any())).thenAnswer((invocation) ->
+                new ManualRequestContext(user(invocation.getArgument(0)), requestContext));
+    }
+
+    @After
+    public void clearContext() {
+        requestContext.setContext(null);
+    }
+
+    private static CurrentUser user(Account.Id id) {
+        CurrentUser user = Mockito.mock(CurrentUser.class);
+        Mockito.when(user.isIdentifiedUser()).thenReturn(id != null);
+        Mockito.when(user.getAccountId()).thenReturn(id);
+        return user;
+    }
+
+    private AssignmentQueue queue(AssignmentQueue.Overflow overflow) throws InterruptedException {
+        AssignmentQueue queue = new AssignmentQueue(1, 2, overflow, 0, 0, 0, 0, TimeUnit.SECONDS.toNanos(5), new DisabledMetricMaker(), requestContext, oneOffRequestContext);
+        // keep the worker busy until released
+        queue.submit("a", "project", AssignmentQueue.Priority.BACKGROUND, () -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ran.add("a");
+        });
+        Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        return queue;
+    }
+
+    private void submit(AssignmentQueue queue, String... names) {
+        submit(queue, AssignmentQueue.Priority.BACKGROUND, names);
+    }
+
+    private void submit(AssignmentQueue queue, AssignmentQueue.Priority priority, String... names) {
+        for (String name : names) {
+            queue.submit(name, "project", priority, () -> ran.add(name));
+        }
+    }
+
+    @Test
+    public void dropOldest() throws InterruptedException {
+        AssignmentQueue queue = queue(AssignmentQueue.Overflow.DROP_OLDEST);
+        submit(queue, "b", "c", "d");
+        Assert.assertEquals(2, queue.depth());
+
+        release.countDown();
+        queue.stop();
+        Assert.assertEquals(Arrays.asList("a", "c", "d"), ran);
+    }
+
+    @Test
+    public void dropNewest() throws InterruptedException {
+        AssignmentQueue queue = queue(AssignmentQueue.Overflow.DROP_NEWEST);
+        submit(queue, "b", "c", "d");
+
+        release.countDown();
+        queue.stop();
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), ran);
+    }
+
+    @Test
+    public void callerRuns() throws InterruptedException {
+        AssignmentQueue queue = queue(AssignmentQueue.Overflow.CALLER_RUNS);
+        submit(queue, "b", "c", "d");
+        // d ran on this thread, while a still blocks the worker
+        Assert.assertEquals(Collections.singletonList("d"), ran);
+
+        release.countDown();
+        queue.stop();
+        Assert.assertEquals(Arrays.asList("d", "a", "b", "c"), ran);
+    }
+
+    @Test
+    public void stopDrains() throws InterruptedException {
+        AssignmentQueue queue = queue(AssignmentQueue.Overflow.DROP_OLDEST);
+        submit(queue, "b");
+
+        release.countDown();
+        queue.stop();
+        Assert.assertEquals(Arrays.asList("a", "b"), ran);
+
+        // assignments after unload are dropped
+        submit(queue, "c");
+        Assert.assertEquals(Arrays.asList("a", "b"), ran);
+    }
+
+    @Test
+    public void boundsDebounced() throws InterruptedException {
+        AssignmentQueue queue = new AssignmentQueue(1, 2, AssignmentQueue.Overflow.DROP_NEWEST,
+                TimeUnit.MINUTES.toNanos(5), 0, 0, 0, TimeUnit.SECONDS.toNanos(5), new DisabledMetricMaker(), requestContext, oneOffRequestContext);
+        // debounced changes count against the queue size as well
+        submit(queue, "a", "b", "c");
+        Assert.assertEquals(2, queue.depth());
+
+        // unloading doesn't wait for the debounce
+        long start = System.nanoTime();
+        queue.stop();
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        Assert.assertEquals(Arrays.asList("a", "b"), ran);
+        Assert.assertEquals(0, queue.depth());
+    }
+
+    @Test
+    public void coalesces() throws InterruptedException {
+        AssignmentQueue queue = new AssignmentQueue(2, 10, AssignmentQueue.Overflow.DROP_OLDEST,
+                TimeUnit.MILLISECONDS.toNanos(200), 0, 0, 0, TimeUnit.SECONDS.toNanos(5), new DisabledMetricMaker(), requestContext, oneOffRequestContext);
+        queue.submit("change1", "project", AssignmentQueue.Priority.BACKGROUND, () -> ran.add("change1 revision1"));
+        queue.submit("change2", "project", AssignmentQueue.Priority.BACKGROUND, () -> ran.add("change2 revision1"));
+        queue.submit("change1", "project", AssignmentQueue.Priority.BACKGROUND, () -> ran.add("change1 revision2"));
+        queue.submit("change1", "project", AssignmentQueue.Priority.BACKGROUND, () -> ran.add("change1 revision3"));
+
+        queue.stop();
+        Assert.assertEquals(2, ran.size());
+        Assert.assertTrue(ran.contains("change1 revision3"));
+        Assert.assertTrue(ran.contains("change2 revision1"));
+    }
+
+    @Test
+    public void neverConcurrent() throws InterruptedException {
+        AssignmentQueue queue = new AssignmentQueue(4, 10, AssignmentQueue.Overflow.DROP_OLDEST, 0, 0, 0, 0,
+                TimeUnit.SECONDS.toNanos(5), new DisabledMetricMaker(), requestContext, oneOffRequestContext);
+        queue.submit("change1", "project", AssignmentQueue.Priority.BACKGROUND, () -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ran.add("revision1");
+        });
+        Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        // arrive while revision1 is being assigned, only the latest runs afterwards
+        submit(queue, "change1");
+        queue.submit("change1", "project", AssignmentQueue.Priority.BACKGROUND, () -> ran.add("revision3"));
+        Assert.assertEquals(Collections.emptyList(), ran);
+
+        release.countDown();
+        queue.stop();
+        Assert.assertEquals(Arrays.asList("revision1", "revision3"), ran);
+    }
+
+    @Test
+    public void interactiveFirst() throws InterruptedException {
+        AssignmentQueue queue = queue(AssignmentQueue.Overflow.DROP_OLDEST);
+        submit(queue, "b");
+        submit(queue, AssignmentQueue.Priority.INTERACTIVE, "i");
+
+        // the queue is full, the oldest background assignment makes room
+        submit(queue, AssignmentQueue.Priority.INTERACTIVE, "j");
+        // only interactive ones are waiting, the background one is dropped
+        submit(queue, "c");
+
+        release.countDown();
+        queue.stop();
+        Assert.assertEquals(Arrays.asList("a", "i", "j"), ran);
+    }
+
+    @Test
+    public void expedites() throws InterruptedException {
+        AssignmentQueue queue = new AssignmentQueue(1, 10, AssignmentQueue.Overflow.DROP_OLDEST,
+                TimeUnit.MINUTES.toNanos(5), 0, 0, 0, TimeUnit.SECONDS.toNanos(5), new DisabledMetricMaker(), requestContext, oneOffRequestContext);
+        CountDownLatch assigned = new CountDownLatch(1);
+        queue.submit("change1", "project", AssignmentQueue.Priority.BACKGROUND, () -> ran.add("revision1"));
+        // someone asks for reviewers while the push is debounced
+        queue.submit("change1", "project", AssignmentQueue.Priority.INTERACTIVE, () -> {
+            ran.add("autoassign");
+            assigned.countDown();
+        });
+
+        Assert.assertTrue(assigned.await(5, TimeUnit.SECONDS));
+        queue.stop();
+        Assert.assertEquals(Collections.singletonList("autoassign"), ran);
+    }
+
+    @Test
+    public void shapesProjects() throws InterruptedException {
+        // 600 per minute: one every 100ms after a burst of 2
+        AssignmentQueue queue = new AssignmentQueue(4, 10, AssignmentQueue.Overflow.DROP_OLDEST, 0, 600, 2,
+                TimeUnit.MINUTES.toNanos(1), TimeUnit.SECONDS.toNanos(5), new DisabledMetricMaker(), requestContext, oneOffRequestContext);
+        Map<String, Long> started = new ConcurrentHashMap<>();
+        CountDownLatch all = new CountDownLatch(6);
+        long start = System.nanoTime();
+        for (String name : Arrays.asList("p1", "p2", "p3", "p4", "q1", "i1")) {
+            String project = name.startsWith("q") ? "other" : "bulk";
+            AssignmentQueue.Priority priority = name.startsWith("i") ? AssignmentQueue.Priority.INTERACTIVE : AssignmentQueue.Priority.BACKGROUND;
+            queue.submit(name, project, priority, () -> {
+                started.put(name, System.nanoTime() - start);
+                all.countDown();
+            });
+        }
+
+        Assert.assertTrue(all.await(5, TimeUnit.SECONDS));
+        queue.stop();
+        long limit = TimeUnit.MILLISECONDS.toNanos(80);
+        Assert.assertTrue(started.get("p2") < limit);
+        Assert.assertTrue(started.get("p3") >= limit);
+        Assert.assertTrue(started.get("p4") >= 2 * limit);
+        // other projects and interactive assignments don't wait for the bulk
+        Assert.assertTrue(started.get("q1") < limit);
+        Assert.assertTrue(started.get("i1") < limit);
+    }
+
+    @Test
+    public void capsShaping() throws InterruptedException {
+        // 60 per minute without a burst, but no assignment waits more than 100ms
+        AssignmentQueue queue = new AssignmentQueue(4, 10, AssignmentQueue.Overflow.DROP_OLDEST, 0, 60, 1,
+                TimeUnit.MILLISECONDS.toNanos(100), TimeUnit.SECONDS.toNanos(5), new DisabledMetricMaker(), requestContext, oneOffRequestContext);
+        Map<String, Long> started = new ConcurrentHashMap<>();
+        CountDownLatch all = new CountDownLatch(4);
+        long start = System.nanoTime();
+        for (String name : Arrays.asList("p1", "p2", "p3", "p4")) {
+            queue.submit(name, "bulk", AssignmentQueue.Priority.BACKGROUND, () -> {
+                started.put(name, System.nanoTime() - start);
+                all.countDown();
+            });
+        }
+
+        Assert.assertTrue(all.await(5, TimeUnit.SECONDS));
+        queue.stop();
+        // shaped, but not for the 3 seconds the rate asks for
+        Assert.assertTrue(started.get("p2") >= TimeUnit.MILLISECONDS.toNanos(80));
+        Assert.assertTrue(started.get("p4") < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void runsAsCaller() throws InterruptedException {
+        AssignmentQueue queue = new AssignmentQueue(1, 10, AssignmentQueue.Overflow.DROP_OLDEST, 0, 0, 0, 0,
+                TimeUnit.SECONDS.toNanos(5), new DisabledMetricMaker(), requestContext, oneOffRequestContext);
+        List<CurrentUser> users = new CopyOnWriteArrayList<>();
+        Runnable assignment = () -> {
+            RequestContext context = requestContext.getContext();
+            users.add(context == null ? null : context.getUser());
+        };
+
+        // the event thread runs in the request of the user pushing
+        ManualRequestContext context = new ManualRequestContext(user(Account.id(1000)), requestContext);
+        try {
+            queue.submit("change1", "project", AssignmentQueue.Priority.BACKGROUND, assignment);
+        } finally {
+            context.close();
+        }
+        queue.submit("change2", "project", AssignmentQueue.Priority.BACKGROUND, assignment);
+
+        queue.stop();
+        Assert.assertEquals(2, users.size());
+        Assert.assertEquals(Account.id(1000), users.get(0).getAccountId());
+        // without a user the internal one is used
+        Assert.assertSame(internalUser, users.get(1));
+    }
+
+    @Test
+    public void forName() {
+        Assert.assertEquals(AssignmentQueue.Overflow.CALLER_RUNS, AssignmentQueue.Overflow.forName("caller-runs"));
+        Assert.assertEquals(AssignmentQueue.Overflow.DROP_OLDEST, AssignmentQueue.Overflow.forName("unknown"));
+    }
+}
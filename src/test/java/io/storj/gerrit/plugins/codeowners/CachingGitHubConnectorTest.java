@@ -0,0 +1,178 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import com.sun.net.httpserver.HttpServer;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class CachingGitHubConnectorTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void revalidates() throws Exception {
+        List<String> conditions = new ArrayList<>();
+        GitHubConnector github = (request) -> {
+            String etag = request.header("If-None-Match");
+            conditions.add(etag);
+            if ("\"v1\"".equals(etag)) {
+                return response(request, 304, "", "ETag", "\"v1\"", "X-RateLimit-Remaining", "4998");
+            }
+            return response(request, 200, "[{\"login\":\"elek\"}]", "ETag", "\"v1\"", "X-RateLimit-Remaining", "4999");
+        };
+
+        ResponseStore store = new ResponseStore(tmp.getRoot().toPath(), 1024 * 1024);
+        GitHubConnector connector = new CachingGitHubConnector(github, store);
+
+        GitHubConnectorResponse first = connector.send(request("GET", "https://api.github.com/orgs/storj/teams/devs/members"));
+        Assert.assertEquals(200, first.statusCode());
+        Assert.assertEquals("[{\"login\":\"elek\"}]", body(first));
+
+        GitHubConnectorResponse second = connector.send(request("GET", "https://api.github.com/orgs/storj/teams/devs/members"));
+        Assert.assertEquals(200, second.statusCode());
+        Assert.assertEquals("[{\"login\":\"elek\"}]", body(second));
+        Assert.assertEquals("4998", second.header("X-RateLimit-Remaining"));
+
+        // the cache survives a restart
+        connector = new CachingGitHubConnector(github, new ResponseStore(tmp.getRoot().toPath(), 1024 * 1024));
+        Assert.assertEquals("[{\"login\":\"elek\"}]", body(connector.send(request("GET", "https://api.github.com/orgs/storj/teams/devs/members"))));
+
+        // other methods pass through
+        connector.send(request("POST", "https://api.github.com/orgs/storj/teams/devs/members"));
+
+        Assert.assertEquals(Arrays.asList(null, "\"v1\"", "\"v1\"", null), conditions);
+    }
+
+    @Test
+    public void withGitHubClient() throws Exception {
+        List<String> conditions = new ArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/users/elek", (exchange) -> {
+            String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+            conditions.add(etag);
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            if ("\"v1\"".equals(etag)) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] body = "{\"login\":\"elek\",\"email\":\"elek@storj.io\"}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+
+        try {
+            GitHubConnector connector = new CachingGitHubConnector(GitHubConnector.DEFAULT, new ResponseStore(tmp.getRoot().toPath(), 1024 * 1024));
+
+            // GitHub keeps the users it fetched, use a client per lookup
+            for (int i = 0; i < 2; i++) {
+                GitHub github = new GitHubBuilder()
+                        .withEndpoint("http://127.0.0.1:" + server.getAddress().getPort())
+                        .withConnector(connector)
+                        .build();
+                Assert.assertEquals("elek@storj.io", github.getUser("elek").getEmail());
+            }
+            Assert.assertEquals(Arrays.asList(null, "\"v1\""), conditions);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void bounded() throws Exception {
+        GitHubConnector github = (request) -> response(request, 200, String.join("", Collections.nCopies(50, "x")), "ETag", "\"v1\"");
+
+        ResponseStore store = new ResponseStore(tmp.getRoot().toPath(), 1000);
+        GitHubConnector connector = new CachingGitHubConnector(github, store);
+        for (int i = 0; i < 100; i++) {
+            connector.send(request("GET", "https://api.github.com/users/user" + i));
+        }
+
+        Assert.assertTrue(store.bytes() <= 1000);
+        Assert.assertTrue(Objects.requireNonNull(tmp.getRoot().list()).length < 100);
+        Assert.assertNotNull(store.get("https://api.github.com/users/user99 null"));
+        Assert.assertNull(store.get("https://api.github.com/users/user0 null"));
+    }
+
+    static String body(GitHubConnectorResponse response) throws IOException {
+        try (InputStream in = response.bodyStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    static GitHubConnectorResponse response(GitHubConnectorRequest request, int status, String body, String... headers) {
+        Map<String, List<String>> map = new HashMap<>();
+        for (int i = 0; i < headers.length; i += 2) {
+            map.put(headers[i], Collections.singletonList(headers[i + 1]));
+        }
+        return new GitHubConnectorResponse(request, status, map) {
+            @Override
+            public InputStream bodyStream() {
+                return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    static GitHubConnectorRequest request(String method, String url) {
+        return new GitHubConnectorRequest() {
+            @Override
+            public String method() {
+                return method;
+            }
+
+            @Override
+            public Map<String, List<String>> allHeaders() {
+                return Collections.emptyMap();
+            }
+
+            @Override
+            public String header(String name) {
+                return null;
+            }
+
+            @Override
+            public String contentType() {
+                return null;
+            }
+
+            @Override
+            public InputStream body() {
+                return null;
+            }
+
+            @Override
+            public URL url() {
+                try {
+                    return new URL(url);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public boolean hasBody() {
+                return false;
+            }
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.storj.codeowners.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+public class ConfigCacheTest {
+    @Test
+    public void sharedByBlob() {
+        Cache<ObjectId, Config> cache = CacheBuilder.newBuilder().recordStats().build();
+        ConfigCache configs = new ConfigCache(cache);
+
+        AtomicInteger loads = new AtomicInteger();
+        ObjectId blob = ObjectId.fromString("3b18e512dba79e4c8300dd08aeb37f8e728b8dad");
+
+        Config first = configs.get(blob, () -> {
+            loads.incrementAndGet();
+            return Config.parse(Stream.of("* @elek"), true);
+        });
+        Config second = configs.get(ObjectId.fromString(blob.name()), () -> {
+            loads.incrementAndGet();
+            return Config.parse(Stream.of("* @bela"), true);
+        });
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1, cache.stats().hitCount());
+        Assert.assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    public void failedLoad() {
+        ConfigCache configs = new ConfigCache(CacheBuilder.newBuilder().build());
+        ObjectId blob = ObjectId.fromString("3b18e512dba79e4c8300dd08aeb37f8e728b8dad");
+
+        Assert.assertNull(configs.get(blob, () -> {
+            throw new IOException("missing");
+        }));
+        Assert.assertNull(configs.get(blob, () -> {
+            throw new IllegalArgumentException("invalid pattern");
+        }));
+    }
+}
@@ -0,0 +1,60 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.server.account.AccountCache;
+import com.google.gerrit.server.account.AccountState;
+import com.google.gerrit.server.account.externalids.ExternalId;
+import com.google.gerrit.server.account.externalids.ExternalIds;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public class ExternalIdAccountResolverTest {
+    @Test
+    public void resolve() throws Exception {
+        ExternalIds externalIds = Mockito.mock(ExternalIds.class);
+        AccountCache accountCache = Mockito.mock(AccountCache.class);
+
+        addMockAccount(accountCache, 1, "bela", true);
+        addMockAccount(accountCache, 2, "elek", false);
+        addMockAccount(accountCache, 3, "admin", true);
+
+        ExternalId bela = externalId(1);
+        ExternalId elek = externalId(2);
+        ExternalId admin = externalId(3);
+        ImmutableSet<ExternalId> shared = ImmutableSet.of(admin, elek, bela);
+        Mockito.when(externalIds.byEmail("bela@storj.io")).thenReturn(ImmutableSet.of(bela));
+        Mockito.when(externalIds.byEmail("elek@storj.io")).thenReturn(ImmutableSet.of(elek));
+        Mockito.when(externalIds.byEmail("admin@storj.io")).thenReturn(shared);
+        Mockito.when(externalIds.byEmail("nobody@storj.io")).thenReturn(ImmutableSet.of());
+
+        ExternalIdAccountResolver resolver = new ExternalIdAccountResolver(externalIds, accountCache);
+
+        Assert.assertEquals(Integer.valueOf(1), resolver.byUsername("bela"));
+        Assert.assertNull(resolver.byUsername("elek"));
+        Assert.assertNull(resolver.byUsername("nobody"));
+
+        Assert.assertEquals(Integer.valueOf(1), resolver.byEmail("bela@storj.io"));
+        Assert.assertNull(resolver.byEmail("elek@storj.io"));
+        Assert.assertNull(resolver.byEmail("nobody@storj.io"));
+        // lowest active account wins
+        Assert.assertEquals(Integer.valueOf(1), resolver.byEmail("admin@storj.io"));
+    }
+
+    private static ExternalId externalId(int id) {
+        ExternalId externalId = Mockito.mock(ExternalId.class);
+        Mockito.when(externalId.accountId()).thenReturn(Account.id(id));
+        return externalId;
+    }
+
+    private static void addMockAccount(AccountCache accountCache, int id, String username, boolean active) {
+        Account account = Account.builder(Account.id(id), Instant.EPOCH).setInactive(!active).build();
+        AccountState state = AccountState.forAccount(account);
+        Mockito.when(accountCache.get(Account.id(id))).thenReturn(Optional.of(state));
+        Mockito.when(accountCache.getByUsername(username)).thenReturn(Optional.of(state));
+    }
+}
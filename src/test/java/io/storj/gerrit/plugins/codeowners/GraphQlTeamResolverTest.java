@@ -0,0 +1,124 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.authorization.ImmutableAuthorizationProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class GraphQlTeamResolverTest {
+    private HttpServer server;
+    private final List<JsonObject> requests = new ArrayList<>();
+    private final List<String> authorizations = new ArrayList<>();
+
+    @Before
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/graphql", (exchange) -> {
+            JsonObject request;
+            try (InputStream in = exchange.getRequestBody()) {
+                request = new Gson().fromJson(new String(in.readAllBytes(), StandardCharsets.UTF_8), JsonObject.class);
+            }
+            requests.add(request);
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+
+            JsonObject variables = request.getAsJsonObject("variables");
+            String body;
+            switch (variables.get("team").getAsString()) {
+                case "devs":
+                    if (variables.get("cursor").isJsonNull()) {
+                        body = "{\"data\":{\"organization\":{\"team\":{\"privacy\":\"VISIBLE\",\"members\":{"
+                                + "\"pageInfo\":{\"hasNextPage\":true,\"endCursor\":\"c1\"},"
+                                + "\"nodes\":[{\"login\":\"elek\",\"email\":\"elek@storj.io\",\"organizationVerifiedDomainEmails\":[]},"
+                                + "{\"login\":\"bela\",\"email\":\"\",\"organizationVerifiedDomainEmails\":[\"bela@storj.io\"]}]}}}}}";
+                    } else {
+                        body = "{\"data\":{\"organization\":{\"team\":{\"privacy\":\"VISIBLE\",\"members\":{"
+                                + "\"pageInfo\":{\"hasNextPage\":false,\"endCursor\":\"c2\"},"
+                                + "\"nodes\":[{\"login\":\"aron\",\"email\":\"\",\"organizationVerifiedDomainEmails\":null}]}}}}}";
+                    }
+                    break;
+                case "secret":
+                    body = "{\"data\":{\"organization\":{\"team\":{\"privacy\":\"SECRET\",\"members\":{"
+                            + "\"pageInfo\":{\"hasNextPage\":false,\"endCursor\":null},\"nodes\":[]}}}}}";
+                    break;
+                case "partial":
+                    body = "{\"data\":{\"organization\":{\"team\":{\"privacy\":\"VISIBLE\",\"members\":{"
+                            + "\"pageInfo\":{\"hasNextPage\":false,\"endCursor\":null},"
+                            + "\"nodes\":[null,{\"login\":\"elek\",\"email\":\"elek@storj.io\",\"organizationVerifiedDomainEmails\":[]}]}}}},"
+                            + "\"errors\":[{\"message\":\"Resource not accessible by integration\","
+                            + "\"path\":[\"organization\",\"team\",\"members\",\"nodes\",0,\"organizationVerifiedDomainEmails\"]}]}";
+                    break;
+                case "broken":
+                    body = "{\"data\":null,\"errors\":[{\"message\":\"boom\"}]}";
+                    break;
+                default:
+                    body = "{\"data\":{\"organization\":{\"team\":null}}}";
+            }
+
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void stop() {
+        server.stop(0);
+    }
+
+    private GraphQlTeamResolver resolver() throws IOException {
+        URL endpoint = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/graphql");
+        return new GraphQlTeamResolver(endpoint, ImmutableAuthorizationProvider.fromJwtToken("token"));
+    }
+
+    @Test
+    public void members() throws IOException {
+        TeamCache.Team team = resolver().load("storj", "devs");
+
+        Assert.assertEquals(Lists.newArrayList("aron", "bela", "elek"), team.logins);
+        // public emails first, then the verified emails of the organization
+        Assert.assertEquals(ImmutableMap.of("elek", "elek@storj.io", "bela", "bela@storj.io"), team.emails);
+
+        Assert.assertEquals(2, requests.size());
+        Assert.assertEquals("c1", requests.get(1).getAsJsonObject("variables").get("cursor").getAsString());
+        Assert.assertEquals("storj", requests.get(1).getAsJsonObject("variables").get("org").getAsString());
+        Assert.assertEquals("Bearer token", authorizations.get(0));
+    }
+
+    @Test
+    public void missingAndSecret() throws IOException {
+        Assert.assertEquals(Collections.emptyList(), resolver().load("storj", "missing").logins);
+        Assert.assertEquals(Collections.emptyList(), resolver().load("storj", "secret").logins);
+    }
+
+    @Test
+    public void partial() throws IOException {
+        TeamCache.Team team = resolver().load("storj", "partial");
+
+        // the member that failed is skipped, the rest is kept
+        Assert.assertEquals(Collections.singletonList("elek"), team.logins);
+        Assert.assertEquals(ImmutableMap.of("elek", "elek@storj.io"), team.emails);
+    }
+
+    @Test(expected = IOException.class)
+    public void errors() throws IOException {
+        resolver().load("storj", "broken");
+    }
+}
@@ -0,0 +1,158 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link HashRing} with the previous TreeMap and hex string based implementation, both for building a ring
+ * of reviewers and for picking reviewers for a change. Also measures adding and removing a node of a load-weighted
+ * ring (weight 100 per reviewer).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashRingBenchmark {
+    @Param({"5", "30", "200"})
+    public int reviewers;
+
+    private List<String> nodes;
+    private HashRing ring;
+    private LegacyHashRing legacyRing;
+    private HashRing weightedRing;
+    private int change;
+
+    @Setup
+    public void setup() {
+        nodes = new ArrayList<>();
+        for (int i = 0; i < reviewers; i++) {
+            nodes.add(Integer.toString(1000000 + i));
+        }
+        try {
+            ring = HashRing.fromElements(HashRing.MD5, nodes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        legacyRing = LegacyHashRing.fromElements(nodes);
+
+        weightedRing = new HashRing();
+        try {
+            for (final String node : nodes) {
+                weightedRing = weightedRing.withWeightedNode(node, 100);
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String nextChange() {
+        return "project~main~I" + Integer.toHexString(change++);
+    }
+
+    @Benchmark
+    public HashRing build() throws NoSuchAlgorithmException {
+        return HashRing.fromElements(HashRing.MD5, nodes);
+    }
+
+    @Benchmark
+    public LegacyHashRing legacyBuild() {
+        return LegacyHashRing.fromElements(nodes);
+    }
+
+    @Benchmark
+    public HashRing withWeightedNode() throws NoSuchAlgorithmException {
+        return weightedRing.withWeightedNode("2000000", 100);
+    }
+
+    @Benchmark
+    public HashRing withoutNode() throws NoSuchAlgorithmException {
+        return weightedRing.withoutNode(nodes.get(0));
+    }
+
+    @Benchmark
+    public Set<String> getNodes() {
+        return ring.getNodes(nextChange(), 2);
+    }
+
+    @Benchmark
+    public Set<String> legacyGetNodes() {
+        return legacyRing.getNodes(nextChange(), 2);
+    }
+
+    // LegacyHashRing is the MD5 HashRing as it was before it moved to primitive arrays.
+    static class LegacyHashRing {
+        private final TreeMap<String, String> ring = new TreeMap<>();
+        private int size;
+
+        static String md5(final String val) {
+            try {
+                final MessageDigest md = MessageDigest.getInstance("MD5");
+                final byte[] digest = md.digest(val.getBytes());
+                final BigInteger no = new BigInteger(1, digest);
+
+                StringBuilder hashtext = new StringBuilder(no.toString(16));
+                while (hashtext.length() < 32) {
+                    hashtext.insert(0, "0");
+                }
+
+                return hashtext.toString();
+            } catch (NoSuchAlgorithmException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        static LegacyHashRing fromElements(final Collection<String> elements) {
+            final LegacyHashRing ring = new LegacyHashRing();
+            for (final String element : new LinkedHashSet<>(elements)) {
+                ring.ring.put(md5(element + "-0"), element);
+                ring.size++;
+            }
+            return ring;
+        }
+
+        Set<String> getNodes(final String key, final int size) {
+            if (this.size == 0 || size == 0) {
+                return new HashSet<>();
+            }
+
+            final Set<String> nodes = new LinkedHashSet<>();
+            final String needle = md5(key);
+
+            Iterator<Map.Entry<String, String>> iterator = ring.tailMap(needle, false).entrySet().iterator();
+            while (iterator.hasNext()) {
+                nodes.add(iterator.next().getValue());
+                if (nodes.size() == size) {
+                    return nodes;
+                }
+            }
+
+            iterator = ring.headMap(needle, false).entrySet().iterator();
+            while (iterator.hasNext()) {
+                nodes.add(iterator.next().getValue());
+                if (nodes.size() == size) {
+                    return nodes;
+                }
+            }
+
+            return nodes;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HashRingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -6,8 +6,11 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -113,4 +116,59 @@ public class HashRingTest {
         Assert.assertEquals(Sets.newHashSet("ccc"), ring.getNodes("bb1", 2));
 
     }
+
+    @Test
+    public void matchesLegacyPlacement() throws NoSuchAlgorithmException {
+        Random random = new Random(3);
+        for (int round = 0; round < 50; round++) {
+            List<String> nodes = new ArrayList<>();
+            int count = random.nextInt(40);
+            for (int i = 0; i < count; i++) {
+                nodes.add(Integer.toString(1000000 + random.nextInt(100)));
+            }
+
+            HashRing ring = HashRing.fromElements(HashRing.MD5, nodes);
+            HashRingBenchmark.LegacyHashRing legacy = HashRingBenchmark.LegacyHashRing.fromElements(nodes);
+
+            for (int i = 0; i < 20; i++) {
+                String change = "project~main~I" + Long.toHexString(random.nextLong());
+                int size = random.nextInt(4);
+                Assert.assertEquals(Lists.newArrayList(legacy.getNodes(change, size)), Lists.newArrayList(ring.getNodes(change, size)));
+            }
+        }
+
+        Assert.assertEquals(HashRingBenchmark.LegacyHashRing.md5("1000002-0"), HashRing.MD5.apply("1000002-0"));
+    }
+
+    @Test
+    public void incrementalMatchesRebuild() throws NoSuchAlgorithmException {
+        // the short hasher makes points of different nodes collide, which forces the rebuild path
+        for (HashRing.Hasher hasher : Lists.newArrayList(HashRing.MD5, s -> HashRing.MD5.apply(s).substring(0, 2))) {
+            Random random = new Random(5);
+            LinkedHashMap<String, Integer> weights = new LinkedHashMap<>();
+            HashRing ring = new HashRing(hasher);
+
+            for (int step = 0; step < 300; step++) {
+                String node = "node-" + random.nextInt(20);
+                if (random.nextInt(3) == 0) {
+                    weights.remove(node);
+                    ring = ring.withoutNode(node);
+                } else {
+                    int weight = random.nextInt(50);
+                    if (weight > 0) {
+                        weights.put(node, weight);
+                    }
+                    ring = ring.withWeightedNode(node, weight);
+                }
+
+                HashRing rebuilt = new HashRing(hasher, new LinkedHashMap<>(weights));
+                Assert.assertEquals(rebuilt.size(), ring.size());
+                for (int i = 0; i < 10; i++) {
+                    String change = "project~main~I" + Long.toHexString(random.nextLong());
+                    Assert.assertEquals(Lists.newArrayList(rebuilt.getNodes(change, ring.size())),
+                            Lists.newArrayList(ring.getNodes(change, ring.size())));
+                }
+            }
+        }
+    }
 }
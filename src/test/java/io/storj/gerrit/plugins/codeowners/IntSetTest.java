@@ -0,0 +1,27 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class IntSetTest {
+    @Test
+    public void matchesHashSet() {
+        Random random = new Random(7);
+        IntSet set = new IntSet();
+        Set<Integer> expected = new HashSet<>();
+
+        for (int i = 0; i < 5000; i++) {
+            int value = random.nextBoolean() ? 1000000 + random.nextInt(3000) : random.nextInt(20) - 10;
+            Assert.assertEquals(expected.add(value), set.add(value));
+        }
+
+        Assert.assertEquals(expected.size(), set.size());
+        for (int value = -10; value < 1003000; value++) {
+            Assert.assertEquals(expected.contains(value), set.contains(value));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import io.storj.codeowners.Config;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class JgitWrapperTest {
+    private static final List<String> PATHS = Arrays.asList("CODEOWNERS", ".github/CODEOWNERS", "docs/CODEOWNERS");
+
+    @Test
+    public void firstCandidateWins() throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        files.put("README.md", "hello");
+        files.put("docs/CODEOWNERS", "* @docs");
+        files.put(".github/CODEOWNERS", "* @github");
+        Repository repo = repository(files);
+
+        Optional<JgitWrapper.Blob> blob = JgitWrapper.findFirstBlob(repo, "refs/heads/main", PATHS);
+        Assert.assertTrue(blob.isPresent());
+        Assert.assertEquals(".github/CODEOWNERS", blob.get().path);
+        Assert.assertEquals("* @github", read(repo, blob.get().id));
+        Assert.assertEquals("* @github", new String(JgitWrapper.getBlobAsBytes(repo, "refs/heads/main", ".github/CODEOWNERS", 9).get(), StandardCharsets.UTF_8));
+        Assert.assertFalse(JgitWrapper.getBlobAsBytes(repo, "refs/heads/main", ".github/CODEOWNERS", 8).isPresent());
+
+        files.put("CODEOWNERS", "* @root");
+        repo = repository(files);
+
+        blob = JgitWrapper.findFirstBlob(repo, "refs/heads/main", PATHS);
+        Assert.assertTrue(blob.isPresent());
+        Assert.assertEquals("CODEOWNERS", blob.get().path);
+        Assert.assertEquals("* @root", read(repo, blob.get().id));
+    }
+
+    @Test
+    public void missing() throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        files.put("README.md", "hello");
+        files.put("docs/README.md", "hello");
+        Repository repo = repository(files);
+
+        Assert.assertFalse(JgitWrapper.findFirstBlob(repo, "refs/heads/main", PATHS).isPresent());
+        Assert.assertFalse(JgitWrapper.findFirstBlob(repo, "refs/heads/unknown", PATHS).isPresent());
+    }
+
+    @Test
+    public void openBlobLimit() throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        files.put("CODEOWNERS", "* @elek\n* @bela\n");
+        Repository repo = repository(files);
+
+        ObjectId id = JgitWrapper.findFirstBlob(repo, "refs/heads/main", PATHS).get().id;
+
+        try (InputStreamReader reader = new InputStreamReader(JgitWrapper.openBlob(repo, id, 16), StandardCharsets.UTF_8)) {
+            Assert.assertEquals(2, Config.open(reader, true).rules.size());
+        }
+
+        Assert.assertThrows(JgitWrapper.BlobTooLargeException.class, () -> JgitWrapper.openBlob(repo, id, 15));
+    }
+
+    private static String read(Repository repo, ObjectId id) throws IOException {
+        try (InputStream stream = JgitWrapper.openBlob(repo, id, Long.MAX_VALUE)) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // repository creates an in-memory repository with a single commit on main, holding files at most one level deep.
+    private static Repository repository(Map<String, String> files) throws IOException {
+        InMemoryRepository repo = new InMemoryRepository(new DfsRepositoryDescription("test"));
+
+        try (ObjectInserter inserter = repo.newObjectInserter()) {
+            Map<String, TreeFormatter> dirs = new TreeMap<>();
+            Map<String, ObjectId> root = new TreeMap<>();
+
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                ObjectId blob = inserter.insert(Constants.OBJ_BLOB, file.getValue().getBytes(StandardCharsets.UTF_8));
+                int slash = file.getKey().indexOf('/');
+                if (slash < 0) {
+                    root.put(file.getKey(), blob);
+                } else {
+                    dirs.computeIfAbsent(file.getKey().substring(0, slash), (k) -> new TreeFormatter())
+                            .append(file.getKey().substring(slash + 1), FileMode.REGULAR_FILE, blob);
+                }
+            }
+
+            // git sorts trees as if their name ended with a slash
+            Map<String, Map.Entry<FileMode, ObjectId>> entries = new TreeMap<>();
+            for (Map.Entry<String, ObjectId> file : root.entrySet()) {
+                entries.put(file.getKey(), new AbstractMap.SimpleEntry<>(FileMode.REGULAR_FILE, file.getValue()));
+            }
+            for (Map.Entry<String, TreeFormatter> dir : dirs.entrySet()) {
+                entries.put(dir.getKey() + "/", new AbstractMap.SimpleEntry<>(FileMode.TREE, inserter.insert(dir.getValue())));
+            }
+
+            TreeFormatter tree = new TreeFormatter();
+            for (Map.Entry<String, Map.Entry<FileMode, ObjectId>> entry : entries.entrySet()) {
+                String name = entry.getKey().endsWith("/") ? entry.getKey().substring(0, entry.getKey().length() - 1) : entry.getKey();
+                tree.append(name, entry.getValue().getKey(), entry.getValue().getValue());
+            }
+
+            PersonIdent ident = new PersonIdent("test", "test@storj.io");
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(inserter.insert(tree));
+            commit.setAuthor(ident);
+            commit.setCommitter(ident);
+            commit.setMessage("test");
+            ObjectId commitId = inserter.insert(commit);
+            inserter.flush();
+
+            RefUpdate update = repo.updateRef("refs/heads/main");
+            update.setNewObjectId(commitId);
+            update.forceUpdate();
+        }
+
+        return repo;
+    }
+}
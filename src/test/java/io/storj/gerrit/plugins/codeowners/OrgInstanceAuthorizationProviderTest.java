@@ -0,0 +1,132 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.kohsuke.github.authorization.ImmutableAuthorizationProvider;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.storj.gerrit.plugins.codeowners.CachingGitHubConnectorTest.request;
+import static io.storj.gerrit.plugins.codeowners.CachingGitHubConnectorTest.response;
+
+public class OrgInstanceAuthorizationProviderTest {
+    // FakeProvider hands out tokens `token1`, `token2`, ... expiring after the given durations
+    private static class FakeProvider extends OrgInstanceAuthorizationProvider {
+        private final List<Duration> lifetimes;
+        private final AtomicInteger fetches = new AtomicInteger();
+        private final Semaphore fetched = new Semaphore(0);
+        private final RateLimitGovernor governor;
+
+        FakeProvider(Duration... lifetimes) {
+            this(exhausted(), lifetimes);
+        }
+
+        private FakeProvider(RateLimitGovernor governor, Duration... lifetimes) {
+            super(1, ImmutableAuthorizationProvider.fromJwtToken("jwt"), governor);
+            this.governor = governor;
+            this.lifetimes = Arrays.asList(lifetimes);
+        }
+
+        @Override
+        Token fetchToken() throws IOException {
+            int n = fetches.incrementAndGet();
+            try {
+                // tokens are fetched even when the budget of the installation is used up
+                governor.acquire();
+                if (n > lifetimes.size() || lifetimes.get(n - 1) == null) {
+                    throw new IOException("GitHub unavailable");
+                }
+                sleep();
+                return new Token("token" + n, Instant.now().plus(lifetimes.get(n - 1)));
+            } finally {
+                fetched.release();
+            }
+        }
+
+        private static void sleep() {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static RateLimitGovernor exhausted() {
+        RateLimitGovernor governor = new RateLimitGovernor(500);
+        governor.update(response(request("GET", "https://api.github.com/users/elek"), 200, "",
+                "X-RateLimit-Limit", "5000", "X-RateLimit-Remaining", "0",
+                "X-RateLimit-Reset", Long.toString(Instant.now().plus(Duration.ofHours(1)).getEpochSecond())));
+        return governor;
+    }
+
+    private FakeProvider provider;
+
+    @After
+    public void stop() {
+        provider.stop();
+    }
+
+    @Test
+    public void firstFetchIsShared() throws Exception {
+        provider = new FakeProvider(Duration.ofHours(1));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<String>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(provider::getEncodedAuthorization);
+            }
+            for (Future<String> result : executor.invokeAll(tasks)) {
+                Assert.assertEquals("token token1", result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(1, provider.fetches.get());
+    }
+
+    @Test
+    public void refreshesInBackground() throws Exception {
+        // the first token is due for refresh right away, while still valid for 10 minutes
+        provider = new FakeProvider(Duration.ofMinutes(15), Duration.ofHours(1));
+
+        Assert.assertEquals("token token1", provider.getEncodedAuthorization());
+        Assert.assertTrue(provider.fetched.tryAcquire(2, 5, TimeUnit.SECONDS));
+
+        // the new token is swapped in right after it was fetched
+        String authorization = provider.getEncodedAuthorization();
+        for (int i = 0; i < 100 && !authorization.equals("token token2"); i++) {
+            Thread.sleep(10);
+            authorization = provider.getEncodedAuthorization();
+        }
+        Assert.assertEquals("token token2", authorization);
+        Assert.assertEquals(2, provider.fetches.get());
+    }
+
+    @Test
+    public void failedRefreshKeepsToken() throws Exception {
+        provider = new FakeProvider(Duration.ofMinutes(15), null);
+
+        Assert.assertEquals("token token1", provider.getEncodedAuthorization());
+        Assert.assertTrue(provider.fetched.tryAcquire(2, 5, TimeUnit.SECONDS));
+
+        // the refresh failed, the token is valid for a while still
+        Assert.assertEquals("token token1", provider.getEncodedAuthorization());
+        Assert.assertEquals(2, provider.fetches.get());
+    }
+}
@@ -0,0 +1,103 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.collect.Lists;
+import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.api.accounts.Accounts;
+import com.google.gerrit.extensions.client.ListAccountsOption;
+import com.google.gerrit.extensions.common.AccountInfo;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class QueryAccountResolverTest {
+    @Test
+    public void batch() throws Exception {
+        GerritApi gerritApi = Mockito.mock(GerritApi.class);
+        Accounts accounts = Mockito.mock(Accounts.class);
+        Mockito.when(gerritApi.accounts()).thenReturn(accounts);
+
+        AccountInfo bela = account(1, "bela", "bela@storj.io");
+        AccountInfo elek = account(2, "elek", "elek@storj.io");
+        elek.secondaryEmails = Lists.newArrayList("elek@example.com");
+
+        addMockQuery(accounts, "username:\"bela\" OR username:\"Elek\" OR username:\"nobody\"", bela, elek);
+        Accounts.QueryRequest emails = addMockQuery(accounts, "email:\"BELA@storj.io\" OR email:\"elek@example.com\"", bela, elek);
+        // elek was found by a secondary email, which is looked up on its own
+        addMockQuery(accounts, "email:elek@example.com", elek);
+
+        QueryAccountResolver resolver = new QueryAccountResolver(gerritApi);
+
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("bela", 1);
+        expected.put("Elek", 2);
+        Assert.assertEquals(expected, resolver.byUsernames(Lists.newArrayList("bela", "Elek", "nobody")));
+
+        expected.clear();
+        expected.put("BELA@storj.io", 1);
+        expected.put("elek@example.com", 2);
+        Assert.assertEquals(expected, resolver.byEmails(Lists.newArrayList("BELA@storj.io", "elek@example.com")));
+        // secondary emails need the modify account capability
+        Mockito.verify(emails).withOptions(ListAccountsOption.DETAILS);
+        Mockito.verify(accounts, Mockito.never()).query("email:BELA@storj.io");
+    }
+
+    @Test
+    public void preferredEmail() throws Exception {
+        GerritApi gerritApi = Mockito.mock(GerritApi.class);
+        Accounts accounts = Mockito.mock(Accounts.class);
+        Mockito.when(gerritApi.accounts()).thenReturn(accounts);
+
+        // bela has elek's email as a secondary one
+        AccountInfo bela = account(1, "bela", "bela@storj.io");
+        AccountInfo elek = account(2, "elek", "elek@storj.io");
+        addMockQuery(accounts, "email:elek@storj.io", bela, elek);
+        addMockQuery(accounts, "email:\"elek@storj.io\"", bela, elek);
+
+        QueryAccountResolver resolver = new QueryAccountResolver(gerritApi);
+        Assert.assertEquals(Integer.valueOf(2), resolver.byEmail("elek@storj.io"));
+        Assert.assertEquals(Collections.singletonMap("elek@storj.io", 2), resolver.byEmails(Lists.newArrayList("elek@storj.io")));
+    }
+
+    @Test
+    public void truncated() throws Exception {
+        GerritApi gerritApi = Mockito.mock(GerritApi.class);
+        Accounts accounts = Mockito.mock(Accounts.class);
+        Mockito.when(gerritApi.accounts()).thenReturn(accounts);
+
+        AccountInfo bela = account(1, "bela", "bela@storj.io");
+        bela._moreAccounts = true;
+        addMockQuery(accounts, "username:\"bela\" OR username:\"elek\"", bela);
+        addMockQuery(accounts, "username:elek", account(2, "elek", "elek@storj.io"));
+
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("bela", 1);
+        expected.put("elek", 2);
+        Assert.assertEquals(expected, new QueryAccountResolver(gerritApi).byUsernames(Lists.newArrayList("bela", "elek")));
+    }
+
+    private static AccountInfo account(int id, String username, String email) {
+        AccountInfo account = new AccountInfo(username, email);
+        account._accountId = id;
+        account.username = username;
+        return account;
+    }
+
+    private static Accounts.QueryRequest addMockQuery(Accounts accounts, String query, AccountInfo... results) throws Exception {
+        List<AccountInfo> res = new ArrayList<>();
+        Collections.addAll(res, results);
+
+        Accounts.QueryRequest request = Mockito.mock(Accounts.QueryRequest.class);
+        Mockito.when(request.withLimit(ArgumentMatchers.anyInt())).thenReturn(request);
+        Mockito.when(request.withOptions(ArgumentMatchers.<ListAccountsOption>any())).thenReturn(request);
+        Mockito.when(request.get()).thenReturn(res);
+        Mockito.when(accounts.query(query)).thenReturn(request);
+        return request;
+    }
+}
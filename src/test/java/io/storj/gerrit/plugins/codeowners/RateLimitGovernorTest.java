@@ -0,0 +1,186 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.connector.GitHubConnector;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.storj.gerrit.plugins.codeowners.CachingGitHubConnectorTest.body;
+import static io.storj.gerrit.plugins.codeowners.CachingGitHubConnectorTest.request;
+import static io.storj.gerrit.plugins.codeowners.CachingGitHubConnectorTest.response;
+
+public class RateLimitGovernorTest {
+    private static final long NOW = TimeUnit.SECONDS.toMillis(1_700_000_000L);
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final AtomicLong clock = new AtomicLong(NOW);
+
+    // FakeGovernor passes time instead of sleeping
+    private class FakeGovernor extends RateLimitGovernor {
+        FakeGovernor(long reserve) {
+            super(reserve, clock::get);
+        }
+
+        @Override
+        void sleep(long millis) {
+            clock.addAndGet(millis);
+        }
+    }
+
+    private static String seconds(long millis) {
+        return Long.toString(TimeUnit.MILLISECONDS.toSeconds(millis));
+    }
+
+    private int acquired(RateLimitGovernor governor, RateLimitGovernor.Priority priority) throws IOException {
+        return governor.call(priority, () -> {
+            int n = 0;
+            try {
+                while (n < 10_000) {
+                    governor.acquire();
+                    n++;
+                }
+            } catch (RateLimitGovernor.Throttled e) {
+                // budget of the priority used up
+            }
+            return n;
+        });
+    }
+
+    @Test
+    public void priorities() throws IOException {
+        RateLimitGovernor governor = new FakeGovernor(500);
+
+        // nothing is known before the first response
+        Assert.assertEquals(10_000, acquired(governor, RateLimitGovernor.Priority.LOW));
+
+        governor.update(response(request("GET", "https://api.github.com/users/elek"), 200, "",
+                "X-RateLimit-Limit", "5000", "X-RateLimit-Remaining", "600", "X-RateLimit-Reset", seconds(NOW + 3_600_000)));
+
+        Assert.assertEquals(100, acquired(governor, RateLimitGovernor.Priority.LOW));
+        Assert.assertEquals(250, acquired(governor, RateLimitGovernor.Priority.NORMAL));
+        Assert.assertEquals(250, acquired(governor, RateLimitGovernor.Priority.HIGH));
+        Assert.assertEquals(0, governor.remaining());
+
+        Assert.assertEquals(1, governor.throttled(RateLimitGovernor.Priority.LOW));
+        Assert.assertEquals(1, governor.throttled(RateLimitGovernor.Priority.HIGH));
+
+        // the budget renews with the window
+        clock.set(NOW + 3_600_000);
+        Assert.assertEquals(4500, acquired(governor, RateLimitGovernor.Priority.LOW));
+    }
+
+    @Test
+    public void delays() throws IOException {
+        RateLimitGovernor governor = new FakeGovernor(500);
+        governor.update(response(request("GET", "https://api.github.com/users/elek"), 200, "",
+                "X-RateLimit-Limit", "5000", "X-RateLimit-Remaining", "0", "X-RateLimit-Reset", seconds(NOW + 60_000)));
+
+        // without deadline requests can't wait
+        try {
+            governor.call(RateLimitGovernor.Priority.HIGH, () -> {
+                governor.acquire();
+                return null;
+            });
+            Assert.fail("expected the request to be throttled");
+        } catch (RateLimitGovernor.Throttled e) {
+            // expected
+        }
+
+        // the window resets before the deadline
+        governor.call(RateLimitGovernor.Priority.LOW, System.nanoTime() + TimeUnit.MINUTES.toNanos(5), () -> {
+            governor.acquire();
+            return null;
+        });
+        Assert.assertEquals(NOW + 60_000, clock.get());
+        Assert.assertEquals(1, governor.delayed(RateLimitGovernor.Priority.LOW));
+        Assert.assertEquals(4999, governor.remaining());
+    }
+
+    @Test
+    public void notModified() throws IOException {
+        RateLimitGovernor governor = new FakeGovernor(500);
+        GitHubConnector connector = new RateLimitedGitHubConnector((request) -> response(request, 304, "",
+                "X-RateLimit-Limit", "5000", "X-RateLimit-Remaining", "600", "X-RateLimit-Reset", seconds(NOW + 3_600_000)), governor);
+
+        // revalidated responses don't count against the limit, the budget doesn't drift
+        for (int i = 0; i < 200; i++) {
+            connector.send(request("GET", "https://api.github.com/users/elek"));
+        }
+        Assert.assertEquals(600, governor.remaining());
+        Assert.assertEquals(100, acquired(governor, RateLimitGovernor.Priority.LOW));
+    }
+
+    @Test
+    public void exempt() throws IOException {
+        RateLimitGovernor governor = new FakeGovernor(500);
+        governor.update(response(request("GET", "https://api.github.com/users/elek"), 200, "",
+                "X-RateLimit-Limit", "5000", "X-RateLimit-Remaining", "0", "X-RateLimit-Reset", seconds(NOW + 3_600_000)));
+        GitHubConnector connector = new RateLimitedGitHubConnector((request) -> response(request, 201, "",
+                "X-RateLimit-Limit", "15000", "X-RateLimit-Remaining", "14000", "X-RateLimit-Reset", seconds(NOW + 60_000)), governor);
+
+        // requests of the app itself go out, and their limit isn't the one of the installation
+        governor.exempt(() -> connector.send(request("POST", "https://api.github.com/app/installations/1/access_tokens")));
+        Assert.assertEquals(0, governor.remaining());
+        Assert.assertEquals(5000, governor.limit());
+    }
+
+    @Test
+    public void secondaryLimit() throws IOException {
+        RateLimitGovernor governor = new FakeGovernor(500);
+        GitHubConnector connector = new RateLimitedGitHubConnector(
+                (request) -> response(request, 403, "", "Retry-After", "30"), governor);
+
+        try {
+            connector.send(request("GET", "https://api.github.com/users/elek"));
+            Assert.fail("expected the request to be throttled");
+        } catch (RateLimitGovernor.Throttled e) {
+            // expected
+        }
+
+        // every request pauses, even with budget left
+        try {
+            connector.send(request("GET", "https://api.github.com/users/elek"));
+            Assert.fail("expected the request to be throttled");
+        } catch (RateLimitGovernor.Throttled e) {
+            // expected
+        }
+        Assert.assertEquals(1, governor.throttled(RateLimitGovernor.Priority.NORMAL));
+    }
+
+    @Test
+    public void servesStale() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        RateLimitGovernor governor = new FakeGovernor(500);
+        GitHubConnector github = (request) -> {
+            sent.incrementAndGet();
+            return response(request, 200, "{\"login\":\"elek\"}", "ETag", "\"v1\"",
+                    "X-RateLimit-Limit", "5000", "X-RateLimit-Remaining", "100", "X-RateLimit-Reset", seconds(NOW + 60_000));
+        };
+        GitHubConnector connector = new CachingGitHubConnector(new RateLimitedGitHubConnector(github, governor),
+                new ResponseStore(tmp.getRoot().toPath(), 1024 * 1024), governor);
+
+        Assert.assertEquals("{\"login\":\"elek\"}", body(connector.send(request("GET", "https://api.github.com/users/elek"))));
+
+        // below the reserve the cached response is used as is
+        Assert.assertEquals("{\"login\":\"elek\"}", body(governor.call(RateLimitGovernor.Priority.LOW,
+                () -> connector.send(request("GET", "https://api.github.com/users/elek")))));
+        Assert.assertEquals(1, sent.get());
+        Assert.assertEquals(1, governor.stale());
+
+        // without a cached response the request fails
+        try {
+            governor.call(RateLimitGovernor.Priority.LOW, () -> connector.send(request("GET", "https://api.github.com/users/bela")));
+            Assert.fail("expected the request to be throttled");
+        } catch (RateLimitGovernor.Throttled e) {
+            // expected
+        }
+    }
+}
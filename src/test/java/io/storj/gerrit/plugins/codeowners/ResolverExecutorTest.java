@@ -0,0 +1,62 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResolverExecutorTest {
+    @Test
+    public void keepsOrder() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ResolverExecutor resolvers = new ResolverExecutor(executor, 2, TimeUnit.SECONDS.toNanos(30));
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final int n = i;
+            tasks.add(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(10 - n);
+                running.decrementAndGet();
+                if (n == 3) {
+                    throw new IOException("unavailable");
+                }
+                return "user-" + n;
+            });
+        }
+
+        Assert.assertEquals(
+                Lists.newArrayList("user-0", "user-1", "user-2", null, "user-4", "user-5", "user-6", "user-7", "user-8", "user-9"),
+                resolvers.invokeAll(tasks, resolvers.deadline()));
+        Assert.assertTrue(maxRunning.get() <= 2);
+        executor.shutdown();
+    }
+
+    @Test
+    public void deadline() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        ResolverExecutor resolvers = new ResolverExecutor(executor, 2, TimeUnit.MILLISECONDS.toNanos(100));
+
+        CountDownLatch never = new CountDownLatch(1);
+        List<Callable<String>> tasks = new ArrayList<>();
+        tasks.add(() -> "fast");
+        tasks.add(() -> {
+            never.await();
+            return "slow";
+        });
+
+        Assert.assertEquals(Lists.newArrayList("fast", null), resolvers.invokeAll(tasks, resolvers.deadline()));
+        executor.shutdownNow();
+    }
+}
@@ -1,23 +1,52 @@
 package io.storj.gerrit.plugins.codeowners;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.gerrit.extensions.api.GerritApi;
 import com.google.gerrit.extensions.api.accounts.Accounts;
+import com.google.gerrit.extensions.api.changes.ChangeApi;
+import com.google.gerrit.extensions.api.changes.Changes;
+import com.google.gerrit.extensions.api.changes.ReviewInput;
+import com.google.gerrit.extensions.api.changes.ReviewResult;
+import com.google.gerrit.extensions.api.changes.RevisionApi;
+import com.google.gerrit.extensions.client.ReviewerState;
+import com.google.gerrit.extensions.client.ListAccountsOption;
 import com.google.gerrit.extensions.common.AccountInfo;
+import com.google.gerrit.extensions.common.ChangeInfo;
 import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.metrics.DisabledMetricMaker;
 import com.google.gerrit.server.config.PluginConfig;
 import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.gerrit.server.util.ThreadLocalRequestContext;
 import io.storj.codeowners.Config;
 import org.junit.Assert;
 import org.junit.Test;
+import org.kohsuke.github.GHOrganization;
+import org.kohsuke.github.GHTeam;
+import org.kohsuke.github.GHUser;
 import org.kohsuke.github.GitHub;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ReviewAssignerTest {
 
@@ -33,14 +62,10 @@ public class ReviewAssignerTest {
         Mockito.when(gerritApi.accounts()).thenReturn(accounts);
 
 
-        addMockUser(accounts, "bela", "bela@storj.io", 1);
-        addMockUser(accounts, "elek", "elek@storj.io", 2);
-        addMockUser(accounts, "admin", "admin@storj.io", 3);
+        addMockQuery(accounts, "username:\"admin\" OR username:\"bela\" OR username:\"elek\"",
+                account(1, "bela", "bela@storj.io"), account(2, "elek", "elek@storj.io"), account(3, "admin", "admin@storj.io"));
 
-        PluginConfigFactory configFactory = Mockito.mock(PluginConfigFactory.class);
-        Mockito.when(configFactory.getFromGerritConfig("codeowners")).thenReturn(
-                PluginConfig.create("codeowners", new org.eclipse.jgit.lib.Config(), null));
-        ReviewAssigner assigner = new ReviewAssigner(configFactory, gitHub, gerritApi, git);
+        ReviewAssigner assigner = assigner(gitHub, gerritApi, git);
 
         Config c = Config.open(new InputStreamReader(getClass().getClassLoader().getResourceAsStream("TEST_CODEOWNERS2")));
         Set<String> files = new HashSet<>();
@@ -54,18 +79,177 @@ public class ReviewAssignerTest {
         expected.add(3);
 
         Assert.assertEquals(expected, integers);
+
+        // all owners resolved with the batch, no lookups one by one
+        Mockito.verify(accounts, Mockito.times(1)).query(ArgumentMatchers.anyString());
+        Mockito.verify(gitHub, Mockito.never()).getUser(ArgumentMatchers.anyString());
+    }
+
+    @Test
+    public void teams() throws Exception {
+        GitHub gitHub = Mockito.mock(GitHub.class);
+        GHOrganization organization = Mockito.mock(GHOrganization.class);
+        GHTeam team = Mockito.mock(GHTeam.class);
+        // GHUser equality is based on fields the mocks don't have
+        Set<GHUser> members = Collections.newSetFromMap(new IdentityHashMap<>());
+        members.add(addMockMember("bela"));
+        members.add(addMockMember("admin"));
+        Mockito.when(gitHub.getOrganization("storj")).thenReturn(organization);
+        Mockito.when(organization.getTeamBySlug("devs")).thenReturn(team);
+        Mockito.when(team.getPrivacy()).thenReturn(GHTeam.Privacy.CLOSED);
+        Mockito.when(team.getMembers()).thenReturn(members);
+
+        GerritApi gerritApi = Mockito.mock(GerritApi.class);
+        Accounts accounts = Mockito.mock(Accounts.class);
+        Mockito.when(gerritApi.accounts()).thenReturn(accounts);
+
+        addMockQuery(accounts, "username:\"admin\" OR username:\"bela\"", account(1, "bela", "bela@storj.io"), account(3, "admin", "admin@storj.io"));
+        addMockQuery(accounts, "email:\"elek@storj.io\"", account(2, "elek", "elek@storj.io"));
+
+        ReviewAssigner assigner = assigner(gitHub, gerritApi, Mockito.mock(GitRepositoryManager.class));
+
+        Config c = Config.parse(Stream.of("* @storj/devs elek@storj.io"), true);
+        Set<String> files = new HashSet<>();
+        files.add("README.md");
+
+        Set<Integer> expected = new HashSet<>();
+        expected.add(1);
+        expected.add(2);
+        expected.add(3);
+        Assert.assertEquals(expected, assigner.fromCodeOwners(c, files));
+
+        // one query for all usernames and one for all emails
+        Mockito.verify(accounts, Mockito.times(2)).query(ArgumentMatchers.anyString());
+    }
+
+    @Test
+    public void teamEmails() throws Exception {
+        GitHub gitHub = Mockito.mock(GitHub.class);
+        TeamResolver teams = (org, team) -> new TeamCache.Team(
+                ImmutableList.of("aron", "bela"), ImmutableMap.of("aron", "aron@storj.io"));
+
+        GerritApi gerritApi = Mockito.mock(GerritApi.class);
+        Accounts accounts = Mockito.mock(Accounts.class);
+        Mockito.when(gerritApi.accounts()).thenReturn(accounts);
+
+        addMockQuery(accounts, "username:\"aron\" OR username:\"bela\"", account(1, "bela", "bela@storj.io"));
+        addMockQuery(accounts, "email:\"elek@storj.io\" OR email:\"aron@storj.io\"", account(2, "elek", "elek@storj.io"), account(4, "aron", "aron@storj.io"));
+
+        ReviewAssigner assigner = assigner(gitHub, gerritApi, Mockito.mock(GitRepositoryManager.class), teams);
+
+        Config c = Config.parse(Stream.of("* @storj/devs elek@storj.io"), true);
+        Set<String> files = new HashSet<>();
+        files.add("README.md");
+
+        Set<Integer> expected = new HashSet<>();
+        expected.add(1);
+        expected.add(2);
+        expected.add(4);
+        Assert.assertEquals(expected, assigner.fromCodeOwners(c, files));
+
+        // the email of aron came with the team
+        Mockito.verify(gitHub, Mockito.never()).getUser(ArgumentMatchers.anyString());
     }
 
-    private void addMockUser(Accounts accounts, String name, String email, Integer id) throws RestApiException {
+    @Test
+    public void unloadedTeam() throws Exception {
+        GitHub gitHub = Mockito.mock(GitHub.class);
+        TeamResolver teams = (org, team) -> {
+            throw new IOException("unavailable");
+        };
+
+        GerritApi gerritApi = Mockito.mock(GerritApi.class);
+        Accounts accounts = Mockito.mock(Accounts.class);
+        Mockito.when(gerritApi.accounts()).thenReturn(accounts);
+
+        ReviewAssigner assigner = assigner(gitHub, gerritApi, Mockito.mock(GitRepositoryManager.class), teams);
+
+        Config c = Config.parse(Stream.of("* @storj/devs elek@storj.io"), true);
+        Set<String> files = new HashSet<>();
+        files.add("README.md");
+
+        // the change isn't assigned from elek alone
+        Assert.assertThrows(IOException.class, () -> assigner.fromCodeOwners(c, files));
+        Mockito.verify(accounts, Mockito.never()).query(ArgumentMatchers.anyString());
+    }
+
+    @Test
+    public void addReviewers() throws Exception {
+        GerritApi gerritApi = Mockito.mock(GerritApi.class);
+        Changes changes = Mockito.mock(Changes.class);
+        ChangeApi changeApi = Mockito.mock(ChangeApi.class);
+        RevisionApi revisionApi = Mockito.mock(RevisionApi.class);
+        Mockito.when(gerritApi.changes()).thenReturn(changes);
+        Mockito.when(changes.id("change")).thenReturn(changeApi);
+        Mockito.when(changeApi.current()).thenReturn(revisionApi);
+        Mockito.when(revisionApi.review(ArgumentMatchers.any())).thenReturn(new ReviewResult());
+
+        ReviewAssigner assigner = assigner(Mockito.mock(GitHub.class), gerritApi, Mockito.mock(GitRepositoryManager.class));
+
+        ChangeInfo change = new ChangeInfo();
+        change.id = "change";
+        change.reviewers = new HashMap<>();
+        change.reviewers.put(ReviewerState.REVIEWER, Collections.singletonList(account(1, "bela", "bela@storj.io")));
+        change.reviewers.put(ReviewerState.CC, Collections.singletonList(account(2, "elek", "elek@storj.io")));
+
+        // nothing to add, nothing to write
+        assigner.addReviewers(change, new LinkedHashSet<>(Collections.singletonList("1")));
+        assigner.addReviewers(change, Collections.emptySet());
+        Mockito.verify(gerritApi, Mockito.never()).changes();
+
+        // only the new reviewers are written, CCs become reviewers
+        assigner.addReviewers(change, new LinkedHashSet<>(Arrays.asList("1", "2", "3")));
+        ArgumentCaptor<ReviewInput> request = ArgumentCaptor.forClass(ReviewInput.class);
+        Mockito.verify(revisionApi).review(request.capture());
+        Assert.assertEquals(Arrays.asList("2", "3"),
+                request.getValue().reviewers.stream().map((reviewer) -> reviewer.reviewer).collect(Collectors.toList()));
+    }
+
+    private static ReviewAssigner assigner(GitHub gitHub, GerritApi gerritApi, GitRepositoryManager git) {
+        return assigner(gitHub, gerritApi, git, new RestTeamResolver(gitHub));
+    }
+
+    private static ReviewAssigner assigner(GitHub gitHub, GerritApi gerritApi, GitRepositoryManager git, TeamResolver teams) {
+        RateLimitGovernor governor = new RateLimitGovernor(0);
+        PluginConfigFactory configFactory = Mockito.mock(PluginConfigFactory.class);
+        Mockito.when(configFactory.getFromGerritConfig("codeowners")).thenReturn(
+                PluginConfig.create("codeowners", new org.eclipse.jgit.lib.Config(), null));
+        return new ReviewAssigner(configFactory, gitHub, gerritApi, git,
+                new ConfigCache(CacheBuilder.newBuilder().build()),
+                new ReviewerPoolCache(CacheBuilder.newBuilder().build()),
+                new AccountIdCache(CacheBuilder.newBuilder().build(), CacheBuilder.newBuilder().build()),
+                new QueryAccountResolver(gerritApi),
+                new ReviewerGroup(configFactory, gerritApi),
+                new ResolverExecutor(Executors.newFixedThreadPool(4), 4, TimeUnit.SECONDS.toNanos(30)),
+                new TeamCache(CacheBuilder.newBuilder().build(new TeamCache.Loader(teams, governor))),
+                governor,
+                new AssignmentQueue(1, 10, AssignmentQueue.Overflow.DROP_OLDEST, 0, 0, 0, 0, 0, new DisabledMetricMaker(),
+                        Mockito.mock(ThreadLocalRequestContext.class), Mockito.mock(OneOffRequestContext.class)),
+                new DisabledMetricMaker());
+    }
+
+    private static GHUser addMockMember(String login) {
+        GHUser user = Mockito.mock(GHUser.class);
+        Mockito.when(user.getLogin()).thenReturn(login);
+        return user;
+    }
+
+    private static AccountInfo account(int id, String username, String email) {
+        AccountInfo account = new AccountInfo(username, email);
+        account._accountId = id;
+        account.username = username;
+        return account;
+    }
+
+    private static void addMockQuery(Accounts accounts, String query, AccountInfo... results) throws RestApiException {
         List<AccountInfo> res = new ArrayList<>();
-        AccountInfo user = new AccountInfo(name, email);
-        user._accountId = id;
-        res.add(user);
-
-        Accounts.QueryRequest query = Mockito.mock(Accounts.QueryRequest.class);
-        Mockito.when(query.get()).thenReturn(res);
-        Mockito.when(accounts.query("username:" + name)).thenReturn(query);
-        Mockito.when(accounts.query("email:" + email)).thenReturn(query);
+        Collections.addAll(res, results);
+
+        Accounts.QueryRequest request = Mockito.mock(Accounts.QueryRequest.class);
+        Mockito.when(request.withLimit(ArgumentMatchers.anyInt())).thenReturn(request);
+        Mockito.when(request.withOptions(ArgumentMatchers.<ListAccountsOption>any())).thenReturn(request);
+        Mockito.when(request.get()).thenReturn(res);
+        Mockito.when(accounts.query(query)).thenReturn(request);
     }
 
 }
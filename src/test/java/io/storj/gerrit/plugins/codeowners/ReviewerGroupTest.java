@@ -0,0 +1,102 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.api.groups.Groups;
+import com.google.gerrit.extensions.client.ListGroupsOption;
+import com.google.gerrit.extensions.common.AccountInfo;
+import com.google.gerrit.extensions.common.GroupInfo;
+import com.google.gerrit.extensions.restapi.UnprocessableEntityException;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ReviewerGroupTest {
+    @Test
+    public void membership() throws Exception {
+        GerritApi gerritApi = Mockito.mock(GerritApi.class);
+        Groups groups = Mockito.mock(Groups.class);
+        Mockito.when(gerritApi.groups()).thenReturn(groups);
+
+        Groups.QueryRequest query = Mockito.mock(Groups.QueryRequest.class);
+        Mockito.when(groups.query("name:Org")).thenReturn(query);
+        Mockito.when(query.withOptions(ArgumentMatchers.<ListGroupsOption>any())).thenReturn(query);
+        Mockito.when(query.get())
+                .thenReturn(Collections.singletonList(group("6a1e70e1a88782771a91808c8af9bbb7a9871389", 1, 2)))
+                .thenReturn(Collections.singletonList(group("6a1e70e1a88782771a91808c8af9bbb7a9871389", 2, 3)));
+
+        ReviewerGroup reviewerGroup = new ReviewerGroup(config("name:Org"), gerritApi);
+        Assert.assertTrue(reviewerGroup.isConfigured());
+
+        Assert.assertTrue(reviewerGroup.contains(1));
+        Assert.assertTrue(reviewerGroup.contains(2));
+        Assert.assertFalse(reviewerGroup.contains(3));
+        Mockito.verify(query, Mockito.times(1)).get();
+
+        // other groups don't matter
+        reviewerGroup.onGroupIndexed("b2b5b3e8a56b2ea4b25f7d1f1a5ad2d0a5ad1c4f");
+        Assert.assertTrue(reviewerGroup.contains(1));
+        Mockito.verify(query, Mockito.times(1)).get();
+
+        reviewerGroup.onGroupIndexed("6a1e70e1a88782771a91808c8af9bbb7a9871389");
+        Assert.assertFalse(reviewerGroup.contains(1));
+        Assert.assertTrue(reviewerGroup.contains(3));
+        Mockito.verify(query, Mockito.times(2)).get();
+    }
+
+    @Test
+    public void failedFirstLoad() throws Exception {
+        GerritApi gerritApi = Mockito.mock(GerritApi.class);
+        Groups groups = Mockito.mock(Groups.class);
+        Mockito.when(gerritApi.groups()).thenReturn(groups);
+
+        Groups.QueryRequest query = Mockito.mock(Groups.QueryRequest.class);
+        Mockito.when(groups.query("name:Org")).thenReturn(query);
+        Mockito.when(query.withOptions(ArgumentMatchers.<ListGroupsOption>any())).thenReturn(query);
+        Mockito.when(query.get())
+                .thenThrow(new UnprocessableEntityException("index unavailable"))
+                .thenReturn(Collections.singletonList(group("6a1e70e1a88782771a91808c8af9bbb7a9871389", 1)));
+
+        ReviewerGroup reviewerGroup = new ReviewerGroup(config("name:Org"), gerritApi);
+        Assert.assertFalse(reviewerGroup.contains(1));
+
+        // the failure isn't cached until the next refresh
+        Assert.assertTrue(reviewerGroup.contains(1));
+        Mockito.verify(query, Mockito.times(2)).get();
+    }
+
+    @Test
+    public void notConfigured() {
+        ReviewerGroup reviewerGroup = new ReviewerGroup(config(""), Mockito.mock(GerritApi.class));
+        Assert.assertFalse(reviewerGroup.isConfigured());
+    }
+
+    private static PluginConfigFactory config(String reviewerGroup) {
+        org.eclipse.jgit.lib.Config config = new org.eclipse.jgit.lib.Config();
+        if (!reviewerGroup.isEmpty()) {
+            config.setString("plugin", "codeowners", "reviewerGroup", reviewerGroup);
+        }
+
+        PluginConfigFactory configFactory = Mockito.mock(PluginConfigFactory.class);
+        Mockito.when(configFactory.getFromGerritConfig("codeowners")).thenReturn(
+                PluginConfig.create("codeowners", config, null));
+        return configFactory;
+    }
+
+    private static GroupInfo group(String uuid, int... members) {
+        GroupInfo group = new GroupInfo();
+        group.id = uuid;
+        group.members = new ArrayList<>();
+        for (int member : members) {
+            AccountInfo account = new AccountInfo(member);
+            group.members.add(account);
+        }
+        return group;
+    }
+}
@@ -0,0 +1,34 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReviewerPoolCacheTest {
+    @Test
+    public void sharedBySet() {
+        ReviewerPoolCache pools = new ReviewerPoolCache(CacheBuilder.newBuilder().build());
+
+        ReviewerSelector.Pool pool = pools.get(ReviewerSelector.HASH_RING, Lists.newArrayList(1000002, 1000001, 1000003));
+        Assert.assertSame(pool, pools.get(ReviewerSelector.HASH_RING, Lists.newArrayList(1000003, 1000002, 1000001)));
+
+        Assert.assertNotSame(pool, pools.get(ReviewerSelector.HASH_RING, Lists.newArrayList(1000002, 1000001)));
+        Assert.assertNotSame(pool, pools.get(ReviewerSelector.RENDEZVOUS, Lists.newArrayList(1000002, 1000001, 1000003)));
+
+        Assert.assertEquals(
+                ReviewerSelector.HASH_RING.pool(Lists.newArrayList("1000001", "1000002", "1000003")).select("testrepo~main~I1", 2),
+                pool.select("testrepo~main~I1", 2));
+    }
+
+    @Test
+    public void weighsBySize() {
+        ReviewerPoolCache.PoolWeigher weigher = new ReviewerPoolCache.PoolWeigher();
+        ReviewerPoolCache.Key key = new ReviewerPoolCache.Key(ReviewerSelector.HASH_RING.name(), Lists.newArrayList(1000001, 1000002));
+        ReviewerPoolCache.Key maglev = new ReviewerPoolCache.Key(ReviewerSelector.MAGLEV.name(), Lists.newArrayList(1000001, 1000002));
+
+        Assert.assertEquals(3, weigher.weigh(key, ReviewerSelector.HASH_RING.pool(Lists.newArrayList("1000001", "1000002"))));
+        // the lookup table of maglev dominates
+        Assert.assertTrue(weigher.weigh(maglev, ReviewerSelector.MAGLEV.pool(Lists.newArrayList("1000001", "1000002"))) > 200);
+    }
+}
@@ -0,0 +1,99 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link ReviewerSelector} strategies: the cost of preparing a pool of candidates, the cost of a lookup,
+ * and (printed by {@link #main(String[])}) how evenly changes are spread across the candidates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReviewerSelectorBenchmark {
+    @Param({"hash-ring", "rendezvous", "jump", "maglev"})
+    public String strategy;
+
+    @Param({"5", "30", "200"})
+    public int reviewers;
+
+    private ReviewerSelector selector;
+    private List<String> candidates;
+    private ReviewerSelector.Pool pool;
+    private int change;
+
+    @Setup
+    public void setup() {
+        selector = ReviewerSelector.forName(strategy);
+        candidates = candidates(reviewers);
+        pool = selector.pool(candidates);
+    }
+
+    @Benchmark
+    public ReviewerSelector.Pool build() {
+        return selector.pool(candidates);
+    }
+
+    @Benchmark
+    public Set<String> lookup() {
+        return pool.select("project~main~I" + Integer.toHexString(change++), 2);
+    }
+
+    static List<String> candidates(final int count) {
+        final List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            candidates.add(Integer.toString(1000000 + i));
+        }
+        return candidates;
+    }
+
+    // loadBalance returns the coefficient of variation of the number of changes assigned to each candidate, lower is
+    // more even.
+    static double loadBalance(final ReviewerSelector selector, final int reviewers, final int changes, final int count) {
+        final List<String> candidates = candidates(reviewers);
+        final ReviewerSelector.Pool pool = selector.pool(candidates);
+
+        final Map<String, Integer> load = new HashMap<>();
+        for (final String candidate : candidates) {
+            load.put(candidate, 0);
+        }
+        for (int i = 0; i < changes; i++) {
+            for (final String reviewer : pool.select("project~main~I" + Integer.toHexString(i), count)) {
+                load.merge(reviewer, 1, Integer::sum);
+            }
+        }
+
+        final double mean = (double) changes * count / reviewers;
+        double variance = 0;
+        for (final int assigned : load.values()) {
+            variance += (assigned - mean) * (assigned - mean);
+        }
+        variance /= reviewers;
+
+        return Math.sqrt(variance) / mean;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        System.out.println("load balance (coefficient of variation, 100k changes, 2 reviewers each)");
+        for (final String strategy : new String[]{"hash-ring", "rendezvous", "jump", "maglev"}) {
+            final StringBuilder line = new StringBuilder(String.format("%-12s", strategy));
+            for (final int reviewers : new int[]{5, 30, 200}) {
+                line.append(String.format("  %3d: %.3f", reviewers,
+                        loadBalance(ReviewerSelector.forName(strategy), reviewers, 100_000, 2)));
+            }
+            System.out.println(line);
+        }
+
+        new Runner(new OptionsBuilder()
+                .include(ReviewerSelectorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,97 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.collect.Lists;
+import io.storj.codeowners.Config;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+public class ReviewerSelectorTest {
+    private static final ReviewerSelector[] SELECTORS = {
+            ReviewerSelector.HASH_RING, ReviewerSelector.RENDEZVOUS, ReviewerSelector.JUMP, ReviewerSelector.MAGLEV
+    };
+
+    @Test
+    public void forName() {
+        for (ReviewerSelector selector : SELECTORS) {
+            Assert.assertSame(selector, ReviewerSelector.forName(selector.name()));
+        }
+        Assert.assertNull(ReviewerSelector.forName("random"));
+    }
+
+    @Test
+    public void directive() {
+        Config config = Config.parse(Stream.of("# gerrit-codeowners.reviewer-selector: maglev", "* @elek"));
+        Assert.assertEquals("maglev", config.reviewerSelector);
+
+        Assert.assertNull(Config.parse(Stream.of("* @elek")).reviewerSelector);
+    }
+
+    @Test
+    public void hashRingPlacement() throws NoSuchAlgorithmException {
+        List<String> candidates = Lists.newArrayList("1000001", "1000002", "1000003", "1000004");
+        HashRing ring = HashRing.fromElements(HashRing.MD5, candidates);
+        ReviewerSelector.Pool pool = ReviewerSelector.HASH_RING.pool(candidates);
+
+        for (int i = 0; i < 100; i++) {
+            String change = "testrepo~main~I" + i;
+            Assert.assertEquals(ring.getNodes(change, 2), pool.select(change, 2));
+        }
+    }
+
+    @Test
+    public void stableAndDistinct() {
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            candidates.add(Integer.toString(1000000 + i));
+        }
+        List<String> shuffled = new ArrayList<>(candidates);
+        Collections.shuffle(shuffled, new Random(1));
+
+        for (ReviewerSelector selector : SELECTORS) {
+            ReviewerSelector.Pool pool = selector.pool(candidates);
+            ReviewerSelector.Pool other = selector.pool(shuffled);
+
+            for (int i = 0; i < 100; i++) {
+                String change = "testrepo~main~I" + i;
+                Set<String> chosen = pool.select(change, 3);
+
+                Assert.assertEquals(selector.name(), 3, chosen.size());
+                Assert.assertTrue(selector.name(), candidates.containsAll(chosen));
+                Assert.assertEquals(selector.name(), chosen, other.select(change, 3));
+            }
+
+            Assert.assertEquals(selector.name(), new HashSet<>(candidates), pool.select("testrepo~main~I1", 50));
+            Assert.assertEquals(selector.name(), 0, pool.select("testrepo~main~I1", 0).size());
+            Assert.assertEquals(selector.name(), 0, pool.select("testrepo~main~I1", -1).size());
+            Assert.assertEquals(selector.name(), 0, selector.pool(new ArrayList<>()).select("testrepo~main~I1", 2).size());
+        }
+    }
+
+    @Test
+    public void minimalDisruption() {
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            candidates.add(Integer.toString(1000000 + i));
+        }
+        List<String> fewer = new ArrayList<>(candidates);
+        fewer.remove("1000003");
+
+        // removing a candidate must only move the changes it had, for the strategies that guarantee it
+        for (ReviewerSelector selector : new ReviewerSelector[]{ReviewerSelector.HASH_RING, ReviewerSelector.RENDEZVOUS}) {
+            ReviewerSelector.Pool before = selector.pool(candidates);
+            ReviewerSelector.Pool after = selector.pool(fewer);
+
+            for (int i = 0; i < 200; i++) {
+                String change = "testrepo~main~I" + i;
+                Set<String> chosen = before.select(change, 1);
+                if (!chosen.contains("1000003")) {
+                    Assert.assertEquals(selector.name(), chosen, after.select(change, 1));
+                }
+            }
+        }
+    }
+}
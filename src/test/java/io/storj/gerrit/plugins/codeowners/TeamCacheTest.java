@@ -0,0 +1,82 @@
+package io.storj.gerrit.plugins.codeowners;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+import org.kohsuke.github.GHFileNotFoundException;
+import org.kohsuke.github.GHOrganization;
+import org.kohsuke.github.GHTeam;
+import org.kohsuke.github.GHUser;
+import org.kohsuke.github.GitHub;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+public class TeamCacheTest {
+    @Test
+    public void members() throws Exception {
+        GitHub gitHub = Mockito.mock(GitHub.class);
+        GHOrganization organization = Mockito.mock(GHOrganization.class);
+        Mockito.when(gitHub.getOrganization("storj")).thenReturn(organization);
+
+        GHTeam devs = addMockTeam(organization, "devs", GHTeam.Privacy.CLOSED);
+        // GHUser equality is based on fields the mocks don't have
+        Set<GHUser> members = Collections.newSetFromMap(new IdentityHashMap<>());
+        members.add(addMockMember("elek"));
+        members.add(addMockMember("bela"));
+        Mockito.when(devs.getMembers()).thenReturn(members);
+
+        GHTeam secret = addMockTeam(organization, "secret", GHTeam.Privacy.SECRET);
+        Mockito.when(organization.getTeamBySlug("missing")).thenThrow(new GHFileNotFoundException("Not Found"));
+        Mockito.when(gitHub.getOrganization("gone")).thenThrow(new GHFileNotFoundException("Not Found"));
+
+        TeamCache teams = new TeamCache(CacheBuilder.newBuilder().build(new TeamCache.Loader(new RestTeamResolver(gitHub), new RateLimitGovernor(0))));
+
+        Assert.assertEquals(Lists.newArrayList("bela", "elek"), teams.team("storj", "devs").logins);
+        Assert.assertEquals(Lists.newArrayList("bela", "elek"), teams.team("storj", "devs").logins);
+        Mockito.verify(devs, Mockito.times(1)).getMembers();
+
+        // missing and secret teams are cached as well
+        Assert.assertEquals(Collections.emptyList(), teams.team("storj", "missing").logins);
+        Assert.assertEquals(Collections.emptyList(), teams.team("storj", "missing").logins);
+        Mockito.verify(organization, Mockito.times(1)).getTeamBySlug("missing");
+        Assert.assertEquals(Collections.emptyList(), teams.team("gone", "devs").logins);
+        Assert.assertEquals(Collections.emptyList(), teams.team("gone", "devs").logins);
+        Mockito.verify(gitHub, Mockito.times(1)).getOrganization("gone");
+
+        Assert.assertEquals(Collections.emptyList(), teams.team("storj", "secret").logins);
+        Assert.assertEquals(Collections.emptyList(), teams.team("storj", "secret").logins);
+        Mockito.verify(secret, Mockito.never()).getMembers();
+        Mockito.verify(organization, Mockito.times(1)).getTeamBySlug("secret");
+    }
+
+    @Test
+    public void failedLoad() throws Exception {
+        GitHub gitHub = Mockito.mock(GitHub.class);
+        Mockito.when(gitHub.getOrganization("storj")).thenThrow(new IOException("unavailable"));
+
+        TeamCache teams = new TeamCache(CacheBuilder.newBuilder().build(new TeamCache.Loader(new RestTeamResolver(gitHub), new RateLimitGovernor(0))));
+
+        Assert.assertNull(teams.team("storj", "devs"));
+        Assert.assertNull(teams.team("storj", "devs"));
+        // failures are not cached
+        Mockito.verify(gitHub, Mockito.times(2)).getOrganization("storj");
+    }
+
+    private static GHTeam addMockTeam(GHOrganization organization, String slug, GHTeam.Privacy privacy) throws IOException {
+        GHTeam team = Mockito.mock(GHTeam.class);
+        Mockito.when(team.getPrivacy()).thenReturn(privacy);
+        Mockito.when(organization.getTeamBySlug(slug)).thenReturn(team);
+        return team;
+    }
+
+    private static GHUser addMockMember(String login) {
+        GHUser user = Mockito.mock(GHUser.class);
+        Mockito.when(user.getLogin()).thenReturn(login);
+        return user;
+    }
+}